@@ -0,0 +1,115 @@
+package com.example.tradex.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.model.RegionalAggregates;
+import com.example.tradex.query.QueryPlan;
+import com.example.tradex.service.ScoreParserService;
+
+/**
+ * 區域平均與「高於門檻」去重排序流程，並與常駐快照、增量區域彙總的同一查詢對照；
+ * snapshotExecuteAll 對照批次掃描的循序與專用 ForkJoinPool 平行路徑
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+public class AggregationBenchmark {
+
+    @Param({ "1000", "100000", "1000000", "10000000" })
+    public int rows;
+
+    private ScoreParserService parser;
+    private List<Map<String, Object>> data;
+    private LpiSnapshot snapshot;
+    private RegionalAggregates aggregates;
+    private ForkJoinPool pool;
+    private final List<QueryPlan> plans = List.of(
+            QueryPlan.topN(5), QueryPlan.averageByRegion(), QueryPlan.above(3.0, null));
+
+    @Setup
+    public void setup() {
+        parser = new ScoreParserService();
+        data = DirtyDataset.generate(rows, 42);
+
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        List<RegionalAggregates.Update> updates = new ArrayList<>(rows);
+        long id = 0;
+        for (Map<String, Object> row : data) {
+            double score = parser.parseScore(row.get("lpi_score"));
+            if (Double.isNaN(score)) continue;
+            builder.add((String) row.get("country"), (String) row.get("region"), score, (Integer) row.get("year"));
+            updates.add(new RegionalAggregates.Update(id++, (String) row.get("country"), (String) row.get("region"),
+                    score, (Integer) row.get("year")));
+        }
+        snapshot = builder.build();
+        aggregates = new RegionalAggregates();
+        aggregates.apply(updates);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, Double> averageByRegion() {
+        return parser.averageByRegion(data);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> filterAbove() {
+        return parser.filterAbove(data, 3.0);
+    }
+
+    @Benchmark
+    public Map<String, Double> snapshotAverageByRegion() {
+        return snapshot.averageByRegion();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> snapshotAbove() {
+        return snapshot.above(3.0, null);
+    }
+
+    @Benchmark
+    public List<Object> snapshotExecuteAll() {
+        return snapshot.executeAll(plans);
+    }
+
+    @Benchmark
+    public List<Object> snapshotExecuteAllParallel() {
+        return snapshot.executeAll(plans, pool, 50_000);
+    }
+
+    @Benchmark
+    public Map<String, Double> aggregatesAverageByRegion() {
+        return aggregates.averageByRegion(null, null);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> aggregatesAbove() {
+        return aggregates.countries(0, 3.0);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.tradex.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 基準測試用的合成髒資料
+ *
+ * 模擬 countries_lpi 的資料品質問題：同一國家多筆、大小寫與空白變體、
+ * 文字分數（"three point six six"）、垃圾值與 null。
+ * 字串事先建好共用，避免 1000 萬筆時記憶體被重複字串吃光。
+ */
+final class DirtyDataset {
+
+    private static final String[] COUNTRIES = {
+            "Singapore", "Germany", "Finland", "Denmark", "Netherlands", "Switzerland", "Austria",
+            "Belgium", "Canada", "Hong Kong", "Sweden", "United Arab Emirates", "France", "Japan",
+            "Spain", "Taiwan", "Korea, Rep.", "United States", "Viet Nam", "South Africa", "Brazil",
+            "India", "Indonesia", "Thailand", "Malaysia", "Philippines", "Saudi Arabia", "New Zealand",
+            "United Kingdom", "Italy", "Poland", "Portugal", "Chile", "Mexico", "Turkey", "Egypt",
+            "Kenya", "Nigeria", "Argentina", "Peru"
+    };
+    private static final String[] REGIONS = {
+            "Asia", "Europe", "North America", "South America", "Africa", "Middle East", "Oceania"
+    };
+    private static final String[] DIGIT_WORDS = {
+            "zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine"
+    };
+    private static final Object[] GARBAGE = { "N/A", "", "  ", "--", "unknown", "1.2.3", null };
+
+    private static final int SCORE_STEPS = 401; // 1.00 ~ 5.00
+
+    private DirtyDataset() {}
+
+    static List<Map<String, Object>> generate(int rows, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // 每個國家準備 5 種寫法：原樣、全大寫、全小寫、去空白、前後多空白
+        String[][] countryVariants = new String[COUNTRIES.length][];
+        for (int i = 0; i < COUNTRIES.length; i++) {
+            String c = COUNTRIES[i];
+            countryVariants[i] = new String[] {
+                    c, c.toUpperCase(), c.toLowerCase(), c.replace(" ", ""), "  " + c + " "
+            };
+        }
+        String[][] regionVariants = new String[REGIONS.length][];
+        for (int i = 0; i < REGIONS.length; i++) {
+            String r = REGIONS[i];
+            regionVariants[i] = new String[] { r, r.toUpperCase(), r.toLowerCase() + " " };
+        }
+
+        String[] numericScores = new String[SCORE_STEPS];
+        String[] wordScores = new String[SCORE_STEPS];
+        Double[] boxedScores = new Double[SCORE_STEPS];
+        for (int i = 0; i < SCORE_STEPS; i++) {
+            int hundredths = 100 + i;
+            numericScores[i] = String.format("%d.%02d", hundredths / 100, hundredths % 100);
+            wordScores[i] = toWords(hundredths);
+            boxedScores[i] = hundredths / 100.0;
+        }
+
+        List<Map<String, Object>> data = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            int country = random.nextInt(COUNTRIES.length);
+            int step = random.nextInt(SCORE_STEPS);
+
+            Object score;
+            int kind = random.nextInt(100);
+            if (kind < 70) score = numericScores[step];
+            else if (kind < 80) score = boxedScores[step];
+            else if (kind < 92) score = wordScores[step];
+            else score = GARBAGE[random.nextInt(GARBAGE.length)];
+
+            Map<String, Object> map = new HashMap<>(8);
+            map.put("country", countryVariants[country][random.nextInt(5)]);
+            map.put("region", regionVariants[country % REGIONS.length][random.nextInt(3)]);
+            map.put("lpi_score", score);
+            map.put("year", 2007 + random.nextInt(17));
+            data.add(map);
+        }
+        return data;
+    }
+
+    /**
+     * 只產生單一種類的分數字串，給解析器基準測試用
+     */
+    static String[] scores(String kind, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            int hundredths = 100 + random.nextInt(SCORE_STEPS);
+            result[i] = switch (kind) {
+                case "numeric" -> String.format("%d.%02d", hundredths / 100, hundredths % 100);
+                case "words" -> toWords(hundredths);
+                default -> String.valueOf(GARBAGE[random.nextInt(GARBAGE.length - 1)]) + i;
+            };
+        }
+        return result;
+    }
+
+    // 327 -> "three point two seven"
+    private static String toWords(int hundredths) {
+        return DIGIT_WORDS[hundredths / 100] + " point "
+                + DIGIT_WORDS[hundredths / 10 % 10] + " " + DIGIT_WORDS[hundredths % 10];
+    }
+}
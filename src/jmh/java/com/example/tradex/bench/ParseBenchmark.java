@@ -0,0 +1,61 @@
+package com.example.tradex.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.tradex.service.ScoreParserService;
+
+/**
+ * ScoreParserService 單一分數解析：數字、文字分數、垃圾值三種輸入
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    @Param({ "numeric", "words", "garbage" })
+    public String kind;
+
+    private ScoreParserService parser;
+    private String[] inputs;
+
+    @Setup
+    public void setup() {
+        parser = new ScoreParserService();
+        inputs = DirtyDataset.scores(kind, INPUTS, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void parseScore(Blackhole bh) {
+        for (String input : inputs) {
+            bh.consume(parser.parseScore(input));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void parseToString(Blackhole bh) {
+        for (String input : inputs) {
+            bh.consume(parser.parse(input));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.tradex.bench;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.tradex.service.ScoreParserService;
+
+/**
+ * 前 N 名清洗流程（processData），limit = 0 表示不限制
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+public class ProcessDataBenchmark {
+
+    @Param({ "1000", "100000", "1000000", "10000000" })
+    public int rows;
+
+    @Param({ "5", "20", "0" })
+    public int limit;
+
+    private ScoreParserService parser;
+    private List<Map<String, Object>> data;
+
+    @Setup
+    public void setup() {
+        parser = new ScoreParserService();
+        data = DirtyDataset.generate(rows, 42);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> processData() {
+        return parser.processData(data, limit);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.tradex.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * OpenRouter chat completions 的替身：回應格式與 /api/v1/chat/completions 相同，
+ * 內容以關鍵字規則把問題翻成 countries_lpi 的 PostgREST 路徑（國家、區域、年份、門檻、前 N 名），
+ * 認不出來的問題回一段與業務無關的文字，跟真的 LLM 一樣
+ */
+final class FakeOpenRouter extends StandInServer {
+
+    static final String PATH = "/api/v1/chat/completions";
+
+    private static final Pattern YEAR = Pattern.compile("\\b(20\\d{2})\\b");
+    private static final Pattern THRESHOLD = Pattern.compile("(?:over|more than|greater than|exceeding)\\s+(\\d(?:\\.\\d+)?)");
+    private static final Pattern LIMIT = Pattern.compile("(?:first|best|leading)\\s+(\\d{1,3})");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong ids = new AtomicLong();
+
+    FakeOpenRouter(int port, Behavior behavior) throws IOException {
+        super(port, PATH, behavior);
+    }
+
+    @Override
+    void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            sendJson(exchange, 405, errorBody(405));
+            return;
+        }
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = objectMapper.readTree(body);
+        }
+        JsonNode messages = request.path("messages");
+        String question = messages.isArray() && !messages.isEmpty()
+                ? messages.get(messages.size() - 1).path("content").asText("") : "";
+        String content = translate(question);
+
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("role", "assistant");
+        message.put("content", content);
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("message", message);
+        choice.put("finish_reason", "stop");
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", "gen-standin-" + ids.incrementAndGet());
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", request.path("model").asText("stand-in"));
+        response.put("choices", List.of(choice));
+        response.put("usage", Map.of("prompt_tokens", 180 + question.length() / 4,
+                "completion_tokens", content.length() / 4, "total_tokens", 180 + (question.length() + content.length()) / 4));
+        sendJson(exchange, 200, objectMapper.writeValueAsBytes(response));
+    }
+
+    @Override
+    String errorBody(int status) {
+        return "{\"error\":{\"message\":\"stand-in injected error\",\"code\":" + status + "}}";
+    }
+
+    static String translate(String question) {
+        String q = question.toLowerCase(Locale.ROOT);
+        List<String> params = new ArrayList<>();
+
+        for (String country : LpiDataset.COUNTRIES) {
+            String name = country.replaceAll(",.*", "");
+            if (q.contains(name.toLowerCase(Locale.ROOT))) {
+                params.add("country=ilike.*" + name + "*");
+                break;
+            }
+        }
+        for (String region : LpiDataset.REGIONS) {
+            if (q.contains(region.toLowerCase(Locale.ROOT))) {
+                params.add("region=ilike.*" + region + "*");
+                break;
+            }
+        }
+        Matcher year = YEAR.matcher(q);
+        if (year.find()) params.add("year=eq." + year.group(1));
+        Matcher threshold = THRESHOLD.matcher(q);
+        if (threshold.find()) params.add("lpi_score=gt." + threshold.group(1));
+
+        if (params.isEmpty()) {
+            return "I'm sorry, I can only help with questions about the logistics performance index.";
+        }
+        params.add("order=lpi_score.desc");
+        Matcher limit = LIMIT.matcher(q);
+        if (limit.find()) params.add("limit=" + limit.group(1));
+        return "/rest/v1/countries_lpi?select=country,region,lpi_score,year&" + String.join("&", params);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.tradex.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import com.example.tradex.query.PostgrestQuery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Supabase /rest/v1/countries_lpi 的替身
+ *
+ * 篩選 / 排序 / limit 借用 PostgrestQuery 在記憶體資料上執行，回傳的 lpi_score 維持原始（髒）值，
+ * 跟真實資料一樣需要應用程式自己清洗。數字字串以數值比較，文字分數與垃圾值視為 null。
+ * 資料不變，同一個路徑的回應序列化一次後重複使用，替身本身不會成為瓶頸。
+ *
+ * 支援 HEAD 與 Prefer: count=exact（Content-Range 帶總數）、Range: from-to 分段（回 206），
+ * 請求帶 Accept-Encoding: gzip 時壓縮回應。
+ */
+final class FakeSupabase extends StandInServer {
+
+    private static final int RESPONSE_CACHE_MAX = 10_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Map<String, Object>> rows;
+    private final Map<String, List<Map<String, Object>>> results = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+
+    FakeSupabase(int port, Behavior behavior, int rows, long seed) throws IOException {
+        super(port, PostgrestQuery.RESOURCE, behavior);
+        this.rows = LpiDataset.generate(rows, seed);
+    }
+
+    int rows() {
+        return rows.size();
+    }
+
+    @Override
+    void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            sendJson(exchange, 405, "{\"message\":\"only GET / HEAD are supported\"}");
+            return;
+        }
+        String query = exchange.getRequestURI().getRawQuery();
+        String path = exchange.getRequestURI().getRawPath() + (query == null ? "" : "?" + query);
+
+        List<Map<String, Object>> result = results.get(path);
+        if (result == null) {
+            try {
+                result = execute(PostgrestQuery.parse(path));
+            } catch (IllegalArgumentException e) {
+                sendJson(exchange, 400, objectMapper.writeValueAsBytes(
+                        Map.of("code", "PGRST100", "message", e.getMessage())));
+                return;
+            }
+            if (results.size() >= RESPONSE_CACHE_MAX) results.clear();
+            results.put(path, result);
+        }
+
+        // Range: from-to（含兩端），超出的部分截掉；沒有 Range 就是全部
+        int from = 0;
+        int to = result.size() - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.matches("\\d+-\\d*")) {
+            String[] bounds = range.split("-", -1);
+            from = Integer.parseInt(bounds[0]);
+            if (!bounds[1].isEmpty()) to = Math.min(to, Integer.parseInt(bounds[1]));
+        }
+        String prefer = exchange.getRequestHeaders().getFirst("Prefer");
+        String total = prefer != null && prefer.contains("count=exact") ? String.valueOf(result.size()) : "*";
+        exchange.getResponseHeaders().set("Content-Range", (from > to ? "*" : from + "-" + to) + "/" + total);
+        int status = range != null ? 206 : 200;
+
+        if (method.equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = encoding != null && encoding.contains("gzip");
+        String key = path + "|" + from + "-" + to + "|" + gzip;
+        byte[] body = responses.get(key);
+        if (body == null) {
+            body = objectMapper.writeValueAsBytes(from > to ? List.of() : result.subList(from, to + 1));
+            if (gzip) body = gzip(body);
+            if (responses.size() >= RESPONSE_CACHE_MAX) responses.clear();
+            responses.put(key, body);
+        }
+        if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        sendJson(exchange, status, body);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    String errorBody(int status) {
+        return "{\"code\":\"PGRST000\",\"message\":\"stand-in injected error\",\"details\":null,\"hint\":null}";
+    }
+
+    /**
+     * 先以只選 id 的同一個查詢找出符合的列，再依 select 從原始資料投影（保留原始分數）
+     */
+    private List<Map<String, Object>> execute(PostgrestQuery query) {
+        String canonical = query.toPath();
+        int amp = canonical.indexOf('&');
+        PostgrestQuery ids = PostgrestQuery.parse(PostgrestQuery.RESOURCE + "?select=id"
+                + (amp < 0 ? "" : canonical.substring(amp)));
+
+        List<Map<String, Object>> matched = ids.compile(FakeSupabase::numericScore).evaluate(rows);
+        List<Map<String, Object>> result = new ArrayList<>(matched.size());
+        for (Map<String, Object> match : matched) {
+            Map<String, Object> row = rows.get((Integer) match.get("id") - 1);
+            Map<String, Object> projected = new LinkedHashMap<>();
+            for (String column : query.select()) projected.put(column, row.get(column));
+            result.add(projected);
+        }
+        return result;
+    }
+
+    private static double numericScore(Object raw) {
+        if (raw instanceof Number n) return n.doubleValue();
+        if (raw == null) return Double.NaN;
+        try {
+            return Double.parseDouble(raw.toString().trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
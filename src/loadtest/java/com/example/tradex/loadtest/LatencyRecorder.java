@@ -0,0 +1,43 @@
+package com.example.tradex.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * 收集每個請求的延遲（奈秒），結束時排序取百分位；壓測的請求數在數百萬以內，全部保留比直方圖簡單也精確
+ */
+final class LatencyRecorder {
+
+    private long[] samples = new long[4096];
+    private int count;
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+    }
+
+    synchronized Snapshot snapshot() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Snapshot(sorted);
+    }
+
+    record Snapshot(long[] sorted) {
+
+        int count() {
+            return sorted.length;
+        }
+
+        /**
+         * 第 q 百分位（0 ~ 1，nearest-rank），單位毫秒
+         */
+        double percentileMs(double q) {
+            if (sorted.length == 0) return Double.NaN;
+            int rank = (int) Math.ceil(q * sorted.length);
+            return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))] / 1e6;
+        }
+
+        double maxMs() {
+            return sorted.length == 0 ? Double.NaN : sorted[sorted.length - 1] / 1e6;
+        }
+    }
+}
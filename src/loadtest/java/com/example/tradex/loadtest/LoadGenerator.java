@@ -0,0 +1,178 @@
+package com.example.tradex.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 對 /api/ask 施壓並記錄延遲
+ *
+ * 兩種模式：
+ * <ul>
+ *   <li>封閉式（rate = 0）：concurrency 個虛擬執行緒各自連續送請求，測最大吞吐量</li>
+ *   <li>開放式（rate > 0）：依固定速率排程送出，延遲從「預定送出時間」起算，
+ *       伺服器變慢時排隊時間也算進去，不會因為客戶端跟著變慢而低估尾端延遲（coordinated omission）；
+ *       同時進行中的請求超過 concurrency 時該次記為 client-overflow</li>
+ * </ul>
+ * warmup 期間的請求照送但不記錄。
+ */
+final class LoadGenerator {
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final QuestionMix mix;
+    private final Duration requestTimeout;
+
+    private final LatencyRecorder all = new LatencyRecorder();
+    private final Map<QuestionMix.Category, LatencyRecorder> byCategory = new EnumMap<>(QuestionMix.Category.class);
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private volatile boolean recording;
+
+    LoadGenerator(String baseUrl, QuestionMix mix, Duration requestTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.requestTimeout = requestTimeout;
+        for (QuestionMix.Category category : QuestionMix.Category.values()) {
+            byCategory.put(category, new LatencyRecorder());
+        }
+    }
+
+    record Report(double seconds, LatencyRecorder.Snapshot all,
+                  Map<QuestionMix.Category, LatencyRecorder.Snapshot> byCategory, Map<String, Long> outcomes) {
+
+        double throughput() {
+            return all.count() / seconds;
+        }
+    }
+
+    Report run(Duration warmup, Duration duration, int concurrency, double rate) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long deadline = measureFrom + duration.toNanos();
+
+        Thread.ofPlatform().daemon().start(() -> {
+            LockSupport.parkNanos(measureFrom - System.nanoTime());
+            recording = true;
+        });
+
+        if (rate > 0) openLoop(start, deadline, concurrency, rate);
+        else closedLoop(deadline, concurrency);
+
+        Map<QuestionMix.Category, LatencyRecorder.Snapshot> categories = new EnumMap<>(QuestionMix.Category.class);
+        byCategory.forEach((category, recorder) -> categories.put(category, recorder.snapshot()));
+        Map<String, Long> counts = new TreeMap<>();
+        outcomes.forEach((outcome, adder) -> counts.put(outcome, adder.sum()));
+        return new Report(duration.toNanos() / 1e9, all.snapshot(), categories, counts);
+    }
+
+    private void closedLoop(long deadline, int concurrency) throws InterruptedException {
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        QuestionMix.Question question = mix.next();
+                        boolean measured = recording;
+                        long sent = System.nanoTime();
+                        String outcome = send(question);
+                        if (measured && System.nanoTime() <= deadline) record(question, outcome, System.nanoTime() - sent);
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(deadline - System.nanoTime() + requestTimeout.toNanos() * 2, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void openLoop(long start, long deadline, int concurrency, double rate) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        double intervalNanos = 1e9 / rate;
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long intended = start + (long) (i * intervalNanos);
+                if (intended > deadline) break;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+
+                QuestionMix.Question question = mix.next();
+                if (!inFlight.tryAcquire()) {
+                    if (recording) outcomes.computeIfAbsent("client-overflow", k -> new LongAdder()).increment();
+                    continue;
+                }
+                boolean measured = recording;
+                workers.submit(() -> {
+                    try {
+                        String outcome = send(question);
+                        if (measured) record(question, outcome, System.nanoTime() - intended);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(requestTimeout.toNanos() * 2, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void record(QuestionMix.Question question, String outcome, long nanos) {
+        all.record(nanos);
+        byCategory.get(question.category()).record(nanos);
+        outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * 送出一個問題並分類結果：ok / app-error（200 但內容是 error）/ overloaded（503）/ http-xxx / io-error
+     */
+    private String send(QuestionMix.Question question) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/ask?question="
+                        + URLEncoder.encode(question.text(), StandardCharsets.UTF_8)))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            int status = response.statusCode();
+            if (status == 200) return response.body().startsWith("{\"error\"") ? "app-error" : "ok";
+            if (status == 503) return "overloaded";
+            return "http-" + status;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        } catch (Exception e) {
+            return "io-error";
+        }
+    }
+
+    /**
+     * 直接取得某個接口的原始內容（壓測結束後印出應用程式的統計）
+     */
+    String fetch(String path) {
+        try {
+            return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(requestTimeout).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "(interrupted)";
+        } catch (Exception e) {
+            return "(" + e.getClass().getSimpleName() + ")";
+        }
+    }
+}
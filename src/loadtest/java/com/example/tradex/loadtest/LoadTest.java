@@ -0,0 +1,176 @@
+package com.example.tradex.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.tradex.TradexApplication;
+
+/**
+ * 端對端壓測入口：啟動本機 Supabase / OpenRouter 替身與 TradexApplication，對 /api/ask 施壓後印出報表
+ *
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--concurrency=64 --duration=60"
+ * </pre>
+ *
+ * 常用參數（預設值見 usage()）：
+ * <ul>
+ *   <li>--duration / --warmup（秒）、--concurrency、--rate（每秒請求數，0 為封閉式）</li>
+ *   <li>--rows、--seed：替身資料量與種子</li>
+ *   <li>--supabase.latency-ms / .jitter-ms / .tail-rate / .tail-factor / .error-rate，--openrouter.* 同</li>
+ *   <li>--mix=routed:60,llm:35,other:5、--distinct、--zipf：問題組合</li>
+ *   <li>--app.xxx=yyy：覆寫應用程式設定，例如 --app.lpi.result-cache.max-size=1 比較快取效果</li>
+ *   <li>--target=http://host:port：改打另外啟動的應用程式（不在同一個 JVM 裡跑）</li>
+ *   <li>--stand-ins-only：只啟動替身並印出網址，給另外啟動的應用程式使用</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        if (options.flag("help")) {
+            usage();
+            return;
+        }
+
+        int rows = options.integer("rows", 2000);
+        try (FakeSupabase supabase = new FakeSupabase(options.integer("supabase.port", 0),
+                StandInServer.Behavior.from(options, "supabase", 20, 503), rows, options.integer("seed", 42));
+             FakeOpenRouter openRouter = new FakeOpenRouter(options.integer("openrouter.port", 0),
+                     StandInServer.Behavior.from(options, "openrouter", 400, 429))) {
+
+            System.out.printf("Supabase 替身   %s（%d 筆，%s）%n", supabase.baseUrl(), supabase.rows(), supabase.behavior());
+            System.out.printf("OpenRouter 替身 %s%s（%s）%n", openRouter.baseUrl(), FakeOpenRouter.PATH, openRouter.behavior());
+
+            if (options.flag("stand-ins-only")) {
+                System.out.printf("%n以替身啟動應用程式：java -jar target/tradex-0.0.1-SNAPSHOT.jar --supabase.url=%s "
+                        + "--openrouter.api-url=%s%s --openrouter.api.key=loadtest%n按 Ctrl+C 結束%n",
+                        supabase.baseUrl(), openRouter.baseUrl(), FakeOpenRouter.PATH);
+                new CountDownLatch(1).await();
+                return;
+            }
+
+            ConfigurableApplicationContext app = null;
+            String target = options.string("target", "");
+            if (target.isBlank()) {
+                app = startApplication(options, supabase, openRouter);
+                target = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+            }
+            try {
+                waitUntilReady(target);
+                run(options, target, supabase, openRouter);
+            } finally {
+                if (app != null) app.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(Options options, FakeSupabase supabase,
+                                                                   FakeOpenRouter openRouter) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("supabase.url", supabase.baseUrl());
+        properties.put("supabase.anon.key", "loadtest");
+        properties.put("openrouter.api.key", "loadtest");
+        properties.put("openrouter.api-url", openRouter.baseUrl() + FakeOpenRouter.PATH);
+        properties.put("lpi.snapshot.file", "");          // 每次都從替身冷啟動，結果才可比較
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.example.tradex", "ERROR");
+        properties.putAll(options.appProperties());
+
+        // 以命令列參數傳入，優先權高於 application.properties
+        List<String> args = new ArrayList<>();
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        return new SpringApplicationBuilder(TradexApplication.class).run(args.toArray(String[]::new));
+    }
+
+    /**
+     * 以輕量的統計接口確認已可接受請求（/actuator/health 會因為沒有 Postgres 而回 DOWN）
+     */
+    private static void waitUntilReady(String target) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        for (int attempt = 0; attempt < 120; attempt++) {
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(target + "/api/stats/intents"))
+                        .timeout(Duration.ofSeconds(2)).build(), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) return;
+            } catch (IOException e) {
+                // 尚未啟動完成
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException(target + " 在 60 秒內沒有就緒");
+    }
+
+    private static void run(Options options, String target, FakeSupabase supabase, FakeOpenRouter openRouter)
+            throws InterruptedException {
+        QuestionMix mix = new QuestionMix(options.string("mix", "routed:60,llm:35,other:5"),
+                options.integer("distinct", 200), options.decimal("zipf", 1.0), options.integer("seed", 42));
+        LoadGenerator generator = new LoadGenerator(target, mix, Duration.ofSeconds(options.integer("timeout", 30)));
+
+        int concurrency = options.integer("concurrency", 32);
+        double rate = options.decimal("rate", 0);
+        Duration warmup = Duration.ofSeconds(options.integer("warmup", 5));
+        Duration duration = Duration.ofSeconds(options.integer("duration", 30));
+        System.out.printf("%n對 %s 施壓：%s，warmup %ds，量測 %ds%n", target,
+                rate > 0 ? String.format("%.0f req/s（上限 %d 同時進行）", rate, concurrency) : concurrency + " 個並行連線",
+                warmup.toSeconds(), duration.toSeconds());
+
+        long supabaseBefore = supabase.requests();
+        long openRouterBefore = openRouter.requests();
+        LoadGenerator.Report report = generator.run(warmup, duration, concurrency, rate);
+
+        System.out.printf("%n%d 個請求 / %.1f 秒 = %.1f req/s%n", report.all().count(), report.seconds(), report.throughput());
+        System.out.println("結果：" + report.outcomes());
+        System.out.printf("%n%-10s %8s %9s %9s %9s %9s %9s%n", "延遲 (ms)", "count", "p50", "p90", "p99", "p99.9", "max");
+        printRow("all", report.all());
+        report.byCategory().forEach((category, snapshot) -> printRow(category.label(), snapshot));
+
+        System.out.printf("%n上游請求（含 warmup）：supabase %d（注入錯誤 %d），openrouter %d（注入錯誤 %d）%n",
+                supabase.requests() - supabaseBefore, supabase.injectedErrors(),
+                openRouter.requests() - openRouterBefore, openRouter.injectedErrors());
+        for (String stats : List.of("/api/stats/upstreams", "/api/stats/result-cache", "/api/stats/translation-cache")) {
+            System.out.println(stats + " " + generator.fetch(stats));
+        }
+    }
+
+    private static void printRow(String label, LatencyRecorder.Snapshot snapshot) {
+        System.out.printf("%-10s %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", label, snapshot.count(),
+                snapshot.percentileMs(0.50), snapshot.percentileMs(0.90), snapshot.percentileMs(0.99),
+                snapshot.percentileMs(0.999), snapshot.maxMs());
+    }
+
+    private static void usage() {
+        System.out.println("""
+                端對端壓測：mvn -Ploadtest test-compile exec:exec -Dloadtest.args="..."
+
+                  --duration=30 --warmup=5        量測 / 暖機秒數
+                  --concurrency=32                並行連線數（開放式時為同時進行的上限）
+                  --rate=0                        每秒請求數，0 表示封閉式（盡量快）
+                  --timeout=30                    單一請求逾時秒數
+                  --rows=2000 --seed=42           替身資料量與亂數種子
+                  --supabase.latency-ms=20        Supabase 替身延遲，另有 .jitter-ms .tail-rate .tail-factor .error-rate .port
+                  --openrouter.latency-ms=400     OpenRouter 替身延遲，參數同上
+                  --mix=routed:60,llm:35,other:5  問題類別權重
+                  --distinct=200 --zipf=1.0       每類問題數與熱門程度
+                  --app.xxx=yyy                   覆寫應用程式設定
+                  --target=http://host:port       改打另外啟動的應用程式
+                  --stand-ins-only                只啟動替身
+                """);
+    }
+}
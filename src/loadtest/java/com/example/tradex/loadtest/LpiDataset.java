@@ -0,0 +1,67 @@
+package com.example.tradex.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 替身 Supabase 的 countries_lpi 資料：固定種子產生，含真實資料的品質問題
+ * （同國多筆、國名寫法不一、文字分數、垃圾值），列數可調
+ */
+final class LpiDataset {
+
+    static final String[] COUNTRIES = {
+            "Singapore", "Germany", "Finland", "Denmark", "Netherlands", "Switzerland", "Austria",
+            "Belgium", "Canada", "Hong Kong", "Sweden", "United Arab Emirates", "France", "Japan",
+            "Spain", "Taiwan", "Korea, Rep.", "United States", "Viet Nam", "South Africa", "Brazil",
+            "India", "Indonesia", "Thailand", "Malaysia", "Philippines", "Saudi Arabia", "New Zealand",
+            "United Kingdom", "Italy", "Poland", "Portugal", "Chile", "Mexico", "Turkey", "Egypt",
+            "Kenya", "Nigeria", "Argentina", "Peru"
+    };
+    static final String[] REGIONS = {
+            "Asia", "Europe", "North America", "South America", "Africa", "Middle East", "Oceania"
+    };
+    static final int FIRST_YEAR = 2007;
+    static final int LAST_YEAR = 2023;
+
+    private static final String[] DIGIT_WORDS = {
+            "zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine"
+    };
+    private static final String[] GARBAGE = { "N/A", "", "--", "unknown" };
+
+    private LpiDataset() {
+    }
+
+    static List<Map<String, Object>> generate(int rows, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Map<String, Object>> data = new ArrayList<>(rows);
+        for (int id = 1; id <= rows; id++) {
+            int country = random.nextInt(COUNTRIES.length);
+            String name = COUNTRIES[country];
+            name = switch (random.nextInt(10)) {
+                case 0 -> name.toUpperCase();
+                case 1 -> "  " + name + " ";
+                default -> name;
+            };
+            int hundredths = 150 + random.nextInt(280);
+            int kind = random.nextInt(100);
+            Object score;
+            if (kind < 80) score = String.format("%d.%02d", hundredths / 100, hundredths % 100);
+            else if (kind < 90) score = DIGIT_WORDS[hundredths / 100] + " point "
+                    + DIGIT_WORDS[hundredths / 10 % 10] + " " + DIGIT_WORDS[hundredths % 10];
+            else if (kind < 97) score = GARBAGE[random.nextInt(GARBAGE.length)];
+            else score = null;
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", id);
+            row.put("country", name);
+            row.put("region", REGIONS[country % REGIONS.length]);
+            row.put("lpi_score", score);
+            row.put("year", FIRST_YEAR + random.nextInt(LAST_YEAR - FIRST_YEAR + 1));
+            data.add(row);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.tradex.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 命令列參數：--key=value（只寫 --key 等同 true）；app. 開頭的參數原樣轉給被測的應用程式
+ */
+final class Options {
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    Options(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("參數格式應為 --key=value：" + arg);
+            int eq = arg.indexOf('=');
+            if (eq < 0) values.put(arg.substring(2), "true");
+            else values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+    }
+
+    String string(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    int integer(String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    double decimal(String key, double defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    boolean flag(String key) {
+        return Boolean.parseBoolean(values.getOrDefault(key, "false"));
+    }
+
+    /**
+     * app.xxx=yyy -> xxx=yyy，給 SpringApplicationBuilder.properties
+     */
+    Map<String, Object> appProperties() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            if (key.startsWith("app.")) properties.put(key.substring(4), value);
+        });
+        return properties;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.tradex.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 壓測用的問題組合
+ *
+ * 三類問題各自事先產生 distinct 個（固定種子），依 --mix 的權重抽類別，類別內依 Zipf 分布抽題：
+ * 少數熱門問題佔大部分流量、長尾問題偶爾出現，快取命中率才接近真實情況（zipf=0 為均勻分布）。
+ * <ul>
+ *   <li>routed：規則路由（IntentRouter）認得的常見問法，不經 LLM</li>
+ *   <li>llm：路由認不出、需要 LLM 翻譯再查 Supabase 的問題</li>
+ *   <li>other：與業務無關的問題</li>
+ * </ul>
+ */
+final class QuestionMix {
+
+    enum Category {
+        ROUTED, LLM, OTHER;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    record Question(Category category, String text) {}
+
+    private static final String[] OTHER = {
+            "What's the weather in Taipei today?",
+            "Tell me a joke about shipping containers",
+            "Who won the 2022 World Cup?",
+            "How do I reset my password?",
+            "Write a haiku about trade",
+    };
+    private static final String[] THRESHOLDS = {"2.5", "2.8", "3.0", "3.2", "3.5", "3.8"};
+
+    private final Category[] categories = Category.values();
+    private final double[] categoryCdf;
+    private final List<List<String>> questions = new ArrayList<>();
+    private final double[] rankCdf;
+
+    /**
+     * @param mix      例如 routed:60,llm:35,other:5
+     * @param distinct 每一類事先產生的問題數
+     * @param zipf     Zipf 指數，越大越集中在熱門問題
+     */
+    QuestionMix(String mix, int distinct, double zipf, long seed) {
+        double[] weights = new double[categories.length];
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            weights[Category.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Double.parseDouble(kv[1].trim());
+        }
+        this.categoryCdf = cdf(weights);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        for (Category category : categories) {
+            List<String> list = new ArrayList<>(distinct);
+            for (int i = 0; i < distinct; i++) list.add(generate(category, random));
+            questions.add(list);
+        }
+
+        double[] rankWeights = new double[distinct];
+        for (int rank = 0; rank < distinct; rank++) rankWeights[rank] = 1.0 / Math.pow(rank + 1, zipf);
+        this.rankCdf = cdf(rankWeights);
+    }
+
+    Question next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Category category = categories[pick(categoryCdf, random.nextDouble())];
+        List<String> list = questions.get(category.ordinal());
+        return new Question(category, list.get(pick(rankCdf, random.nextDouble())));
+    }
+
+    private static String generate(Category category, SplittableRandom random) {
+        String region = LpiDataset.REGIONS[random.nextInt(LpiDataset.REGIONS.length)];
+        String country = LpiDataset.COUNTRIES[random.nextInt(LpiDataset.COUNTRIES.length)].replaceAll(",.*", "");
+        String threshold = THRESHOLDS[random.nextInt(THRESHOLDS.length)];
+        int year = LpiDataset.FIRST_YEAR + random.nextInt(LpiDataset.LAST_YEAR - LpiDataset.FIRST_YEAR + 1);
+        int n = 3 + random.nextInt(18);
+
+        return switch (category) {
+            case ROUTED -> switch (random.nextInt(5)) {
+                case 0 -> "Show me the top " + n + " countries by logistics performance";
+                case 1 -> "Which countries in " + region + " have an LPI score above " + threshold + "?";
+                case 2 -> "What's the average LPI score by region?";
+                case 3 -> "Countries in " + region + " below " + threshold + " in " + year;
+                default -> "顯示物流表現前十名的國家";
+            };
+            case LLM -> switch (random.nextInt(4)) {
+                case 0 -> "How did " + country + " perform in " + year + "?";
+                case 1 -> "List " + region + " records from " + year + " exceeding " + threshold;
+                case 2 -> "Give me the leading " + n + " " + region + " entries for " + year;
+                default -> "Show " + country + "'s logistics history";
+            };
+            case OTHER -> OTHER[random.nextInt(OTHER.length)];
+        };
+    }
+
+    private static double[] cdf(double[] weights) {
+        double total = 0;
+        for (double w : weights) total += w;
+        if (total <= 0) throw new IllegalArgumentException("權重總和必須大於 0");
+        double[] cdf = new double[weights.length];
+        double running = 0;
+        for (int i = 0; i < weights.length; i++) {
+            running += weights[i] / total;
+            cdf[i] = running;
+        }
+        cdf[weights.length - 1] = 1.0;
+        return cdf;
+    }
+
+    private static int pick(double[] cdf, double u) {
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.tradex.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 本機替身伺服器的共用部分：JDK 內建 HttpServer、模擬延遲與錯誤率
+ *
+ * 處理請求用獨立的平台執行緒池，不跟同一個 JVM 裡應用程式的虛擬執行緒搶 carrier，
+ * 應用程式忙碌時替身的延遲仍照設定。
+ *
+ * 延遲 = latencyMs + [0, jitterMs) 的均勻亂數，另有 tailRate 的機率再乘上 tailFactor，模擬偶發的慢請求；
+ * errorRate 的請求在等完延遲後回傳 errorStatus。
+ */
+abstract class StandInServer implements AutoCloseable {
+
+    record Behavior(long latencyMs, long jitterMs, double tailRate, double tailFactor,
+                    double errorRate, int errorStatus) {
+
+        static Behavior from(Options options, String prefix, long defaultLatencyMs, int errorStatus) {
+            return new Behavior(
+                    options.integer(prefix + ".latency-ms", (int) defaultLatencyMs),
+                    options.integer(prefix + ".jitter-ms", (int) (defaultLatencyMs / 2)),
+                    options.decimal(prefix + ".tail-rate", 0.01),
+                    options.decimal(prefix + ".tail-factor", 10),
+                    options.decimal(prefix + ".error-rate", 0),
+                    errorStatus);
+        }
+
+        @Override
+        public String toString() {
+            return "latency=" + latencyMs + "ms+" + jitterMs + "ms, tail=" + tailRate + "x" + tailFactor
+                    + ", error-rate=" + errorRate + " (" + errorStatus + ")";
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(Thread.ofPlatform().daemon().factory());
+    private final Behavior behavior;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    StandInServer(int port, String context, Behavior behavior) throws IOException {
+        this.behavior = behavior;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext(context, exchange -> {
+            try (exchange) {
+                requests.incrementAndGet();
+                simulateLatency();
+                if (ThreadLocalRandom.current().nextDouble() < behavior.errorRate()) {
+                    injectedErrors.incrementAndGet();
+                    sendJson(exchange, behavior.errorStatus(), errorBody(behavior.errorStatus()));
+                    return;
+                }
+                handle(exchange);
+            } catch (Exception e) {
+                sendJson(exchange, 500, "{\"message\":\"stand-in failure: " + e.getClass().getSimpleName() + "\"}");
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * 正常回應（延遲與錯誤注入已處理）
+     */
+    abstract void handle(HttpExchange exchange) throws IOException;
+
+    /**
+     * 注入錯誤時的回應內容，格式與真實上游一致
+     */
+    abstract String errorBody(int status);
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    Behavior behavior() {
+        return behavior;
+    }
+
+    static void sendJson(HttpExchange exchange, int status, String body) throws IOException {
+        sendJson(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void sendJson(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double millis = behavior.latencyMs() + (behavior.jitterMs() > 0 ? random.nextLong(behavior.jitterMs()) : 0);
+        if (random.nextDouble() < behavior.tailRate()) millis *= behavior.tailFactor();
+        if (millis > 0) Thread.sleep((long) millis);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
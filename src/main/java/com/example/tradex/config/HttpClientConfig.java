@@ -0,0 +1,94 @@
+package com.example.tradex.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * 對外 HTTP 連線設定
+ *
+ * OpenRouter 與 Supabase 各自一組連線池（keep-alive 重用、TLS 握手只做一次），
+ * 並設定連線 / 讀取 / 取得連線逾時，避免上游卡住時把 Tomcat 執行緒吊死。
+ * 回應的 gzip 解壓由 HttpClient 自動處理（預設會送出 Accept-Encoding）。
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * 保留冪等請求遇到 I/O 錯誤時的重試，但 429 / 503 不自動重送
+     * （HttpClient 預設會等 1 秒再送一次，連 POST 也會），交給 OutboundGateway 當作過載訊號處理
+     */
+    private static final DefaultHttpRequestRetryStrategy NO_STATUS_RETRY = new DefaultHttpRequestRetryStrategy() {
+        @Override
+        public boolean retryRequest(HttpResponse response, int execCount, HttpContext context) {
+            return false;
+        }
+    };
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient openRouterHttpClient(
+            @Value("${http.openrouter.connect-timeout-ms:3000}") long connectTimeoutMs,
+            @Value("${http.openrouter.read-timeout-ms:30000}") long readTimeoutMs,
+            @Value("${http.openrouter.max-connections:50}") int maxConnections) {
+        return pooledClient(connectTimeoutMs, readTimeoutMs, maxConnections);
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient supabaseHttpClient(
+            @Value("${http.supabase.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${http.supabase.read-timeout-ms:10000}") long readTimeoutMs,
+            @Value("${http.supabase.max-connections:50}") int maxConnections) {
+        return pooledClient(connectTimeoutMs, readTimeoutMs, maxConnections);
+    }
+
+    @Bean
+    public RestTemplate openRouterRestTemplate(@Qualifier("openRouterHttpClient") CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    @Bean
+    public RestTemplate supabaseRestTemplate(@Qualifier("supabaseHttpClient") CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    /**
+     * 每個上游只連同一台主機，所以單一路由上限 = 總上限
+     */
+    private CloseableHttpClient pooledClient(long connectTimeoutMs, long readTimeoutMs, int maxConnections) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // 連線池滿時最多等這麼久，超過就快速失敗
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .setRetryStrategy(NO_STATUS_RETRY)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+}
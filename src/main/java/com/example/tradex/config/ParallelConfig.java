@@ -0,0 +1,22 @@
+package com.example.tradex.config;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 快照分區塊掃描（LpiSnapshot.executeAll）專用的 ForkJoinPool
+ *
+ * 不借用 commonPool：避免和其他 parallel stream、CompletableFuture 搶執行緒，
+ * 也能單獨調整大小。pool-size = 0 表示使用 CPU 核心數。
+ */
+@Configuration
+public class ParallelConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool lpiForkJoinPool(@Value("${lpi.parallel.pool-size:0}") int poolSize) {
+        return new ForkJoinPool(poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors());
+    }
+}
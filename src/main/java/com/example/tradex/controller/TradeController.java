@@ -2,175 +2,292 @@ package com.example.tradex.controller;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.tradex.model.RegionalAggregates;
+import com.example.tradex.query.IntentRouter;
+import com.example.tradex.query.PostgrestQuery;
+import com.example.tradex.query.QueryPlan;
 import com.example.tradex.service.AiService;
-import com.example.tradex.service.ScoreParserService;
+import com.example.tradex.service.AskBatchService;
+import com.example.tradex.service.AskMetrics;
+import com.example.tradex.service.AskStreamService;
+import com.example.tradex.service.AskMetrics.Stage;
+import com.example.tradex.service.DatasetVersion;
+import com.example.tradex.service.LpiAggregateService;
+import com.example.tradex.service.LpiQueryBackend;
+import com.example.tradex.service.OutboundGateway;
+import com.example.tradex.service.ResultCache;
+import com.example.tradex.service.SupabaseClient;
+import com.example.tradex.service.UpstreamOverloadedException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 public class TradeController {
 
-    // 從 application.properties 注入設定
-    @Value("${supabase.anon.key}")
-    private String supabaseKey;
+    private static final Logger log = LoggerFactory.getLogger(TradeController.class);
 
-    @Value("${supabase.url}")
-    private String supabaseUrl;
+    private static final String SERVER_TIMING = "Server-Timing";
 
     @Autowired
     private AiService aiService;
 
     @Autowired
-    private ScoreParserService scoreParserService;
+    private IntentRouter intentRouter;
+
+    @Autowired
+    private SupabaseClient supabaseClient;
+
+    @Autowired
+    private LpiQueryBackend lpiQueryBackend;
+
+    @Autowired
+    private LpiAggregateService lpiAggregateService;
+
+    @Autowired
+    private DatasetVersion datasetVersion;
+
+    @Autowired
+    private ResultCache resultCache;
+
+    @Autowired
+    private AskMetrics askMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AskBatchService askBatchService;
+
+    @Autowired
+    private AskStreamService askStreamService;
+
+    @Autowired
+    private OutboundGateway outboundGateway;
+
+    @Value("${lpi.batch.max-questions:100}")
+    private int batchMaxQuestions;
 
     /**
      * 讀取設定檔
      */
     @GetMapping("/test-data")
     public String testSupabase() {
-        RestTemplate restTemplate = new RestTemplate();
-        HttpHeaders headers = new HttpHeaders();
+        return supabaseClient.fetchRaw("/rest/v1/countries_lpi?select=*&limit=50");
+    }
 
-        headers.set("apikey", supabaseKey);
-        headers.set("Authorization", "Bearer " + supabaseKey);
+    /**
+     * 資料變動後手動刷新查詢後端（重新載入快照 / 刷新物化檢視）
+     */
+    @PostMapping("/backend/refresh")
+    public Map<String, String> refreshBackend() {
+        lpiQueryBackend.refresh();
+        datasetVersion.bump();
+        return Map.of("status", "ok");
+    }
 
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-        String url = supabaseUrl + "/rest/v1/countries_lpi?select=*&limit=50";
+    /**
+     * 翻譯快取的命中 / 未命中統計
+     */
+    @GetMapping("/stats/translation-cache")
+    public Map<String, Long> translationCacheStats() {
+        return aiService.getTranslationCacheStats();
+    }
+
+    /**
+     * 快速路由各類型命中次數與命中率
+     */
+    @GetMapping("/stats/intents")
+    public Map<String, Object> intentStats() {
+        return intentRouter.stats();
+    }
 
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-        return response.getBody();
+    /**
+     * 增量維護的各區域 sum / count / min / max（尚未載入時為空）
+     */
+    @GetMapping("/stats/regions")
+    public Map<String, RegionalAggregates.Stats> regionStats(@RequestParam(required = false) Integer year) {
+        return lpiAggregateService.current()
+                .map(aggregates -> aggregates.statsByRegion(null, year))
+                .orElse(Map.of());
+    }
+
+    /**
+     * 結果快取的命中 / 未命中統計與目前的資料版本
+     */
+    @GetMapping("/stats/result-cache")
+    public Map<String, Long> resultCacheStats() {
+        return resultCache.stats();
+    }
+
+    /**
+     * 各上游目前的併發上限、進行中 / 排隊數、被拒絕次數，以及被合併的重複讀取次數
+     */
+    @GetMapping("/stats/upstreams")
+    public Map<String, Object> upstreamStats() {
+        return outboundGateway.stats();
     }
 
     /**
      * AI 智能問答接口
+     *
+     * 結果依「查詢 key + 資料版本」快取並附上 ETag，瀏覽器帶 If-None-Match 且資料未變時回 304；
+     * 每個回應都帶 Server-Timing 標頭，列出各階段耗時
      */
     @GetMapping("/ask")
-    public Object ask(@RequestParam String question) {
+    public ResponseEntity<Object> ask(@RequestParam String question, WebRequest webRequest) {
+        long start = System.nanoTime();
 
         try {
-            // --- 2. 決定 Supabase 查詢路徑 ---
-            String apiPath = aiService.translateToSupabasePath(question);
-            if (question.contains("前五") || question.toLowerCase().contains("top 5")) {
-                // 強制抓取核心欄位，由 Java 進行後處理以確保去重與排序穩定
-                apiPath = "/rest/v1/countries_lpi?select=country,region,lpi_score";
-            } else {
-                apiPath = aiService.translateToSupabasePath(question);
+            // --- 1. 常見問法直接轉成查詢計畫，交給查詢後端（快照或 JDBC），不必呼叫 LLM ---
+            Optional<QueryPlan> plan = askMetrics.time(Stage.ROUTE, () -> intentRouter.route(question));
+            if (plan.isPresent()) {
+                return cached("plan:" + plan.get().canonicalKey(), webRequest, start,
+                        () -> askMetrics.time(Stage.AGGREGATE, () -> lpiQueryBackend.execute(plan.get())));
             }
 
+            // --- 2. 其他問題由 LLM 決定 Supabase 查詢路徑 ---
+            String apiPath = askMetrics.time(Stage.LLM, () -> aiService.translateToSupabasePath(question));
+
             // 檢查 AI 是否回傳了無效內容 (非業務相關)
-            if (apiPath == null || !apiPath.contains("countries_lpi")) {
+            if (!AiService.isLpiPath(apiPath)) {
             // 改為回傳一個明確的 JSON 物件，讓前端知道這是「文字訊息」
-            return Map.of("type", "text", "content", "我目前只能處理 LPI 物流數據相關的問題，請試著問我關於國家分數或區域平均！");
+            return ResponseEntity.ok().header(SERVER_TIMING, askMetrics.serverTiming(start))
+                    .body(Map.of("type", "text", "content", AiService.OUT_OF_SCOPE_MESSAGE));
             }
 
-            // --- 3. 呼叫 Supabase ---
-            String fullUrl = supabaseUrl + apiPath;
-            RestTemplate restTemplate = new RestTemplate();
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("apikey", supabaseKey);
-            headers.set("Authorization", "Bearer " + supabaseKey);
+            // --- 3. 先驗證 LLM 產生的路徑，不支援或可疑的路徑不送出 ---
+            PostgrestQuery query;
+            try {
+                query = PostgrestQuery.parse(apiPath);
+            } catch (IllegalArgumentException e) {
+                log.warn("拒絕 LLM 查詢路徑「{}」: {}", apiPath, e.getMessage());
+                return ResponseEntity.ok().header(SERVER_TIMING, askMetrics.serverTiming(start))
+                        .body(Map.of("type", "text", "content", AiService.UNSUPPORTED_QUERY_MESSAGE));
+            }
 
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            ResponseEntity<List> response = restTemplate.exchange(fullUrl, HttpMethod.GET, entity, List.class);
-            List<Map<String, Object>> data = response.getBody();
+            // --- 4. 本地資料能回答就在本地執行，否則原樣回傳 Supabase 查詢結果 ---
+            return cached("path:" + query.toPath(), webRequest, start, () -> askMetrics
+                    .time(Stage.AGGREGATE, () -> lpiQueryBackend.evaluate(query))
+                    .<Object>map(rows -> rows)
+                    .orElseGet(() -> {
+                        List<Map<String, Object>> data = supabaseClient.fetchRows(query.toPath());
+                        return data == null ? List.of() : data;
+                    }));
 
-            if (data == null || data.isEmpty()) return List.of();
+        } catch (UpstreamOverloadedException e) {
+            log.warn("上游忙碌，快速拒絕: {}", e.getMessage());
+            return overloaded(e).header(SERVER_TIMING, askMetrics.serverTiming(start))
+                    .body(Map.of("error", UpstreamOverloadedException.USER_MESSAGE));
+        } catch (Exception e) {
+            log.warn("系統執行錯誤: {}", e.getMessage());
+            return ResponseEntity.ok().header(SERVER_TIMING, askMetrics.serverTiming(start))
+                    .body(Map.of("error", "數據解析發生異常，請稍後再試。"));
+        }
+    }
 
-            // --- 4. 針對「平均分數」問題做後處理 ---
-            if (question.contains("average") || question.contains("平均")) {
-                return calculateAverage(data);
-            }
+    /**
+     * 其他接口遇到上游過載時同樣回 503 + Retry-After，而不是 500
+     */
+    @ExceptionHandler(UpstreamOverloadedException.class)
+    public ResponseEntity<Map<String, String>> handleOverloaded(UpstreamOverloadedException e) {
+        log.warn("上游忙碌，快速拒絕: {}", e.getMessage());
+        return overloaded(e).body(Map.of("error", UpstreamOverloadedException.USER_MESSAGE));
+    }
 
-            // --- 5. 針對「前五 / top 5」這類問題 ---
-            if (question.contains("前五") || question.toLowerCase().contains("top 5")) {
-                int limit = 5;
-                return scoreParserService.processData(data, limit);
-            }
+    private static ResponseEntity.BodyBuilder overloaded(UpstreamOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).cacheControl(CacheControl.noStore())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+    }
+
+    /**
+     * 批次問答：一次送多個問題，共用翻譯、上游讀取與計算，逐題回傳結果或錯誤
+     */
+    @PostMapping("/ask/batch")
+    public ResponseEntity<Object> askBatch(@RequestBody BatchRequest request) {
+        long start = System.nanoTime();
+        List<String> questions = request.questions();
+        if (questions == null || questions.isEmpty() || questions.stream().anyMatch(q -> q == null || q.isBlank())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "questions 不可為空"));
+        }
+        if (questions.size() > batchMaxQuestions) {
+            return ResponseEntity.badRequest().body(Map.of("error", "一次最多 " + batchMaxQuestions + " 個問題"));
+        }
 
-            // 6. 針對一般查詢問題，增加一個「嚴格大於」的過濾與「去重」邏輯
-            if (question.contains("above") || question.contains("高於") || question.contains("大於")) {
-                double threshold = 0;
-                java.util.regex.Matcher m = java.util.regex.Pattern.compile("\\d+(\\.\\d+)?").matcher(question);
-            if (m.find()) {
-                    threshold = Double.parseDouble(m.group());
-                }
-
-            final double finalThreshold = threshold;
-
-            // --- 核心修復：先過濾，再透過 Map 去重 ---
-            return data.stream()
-                .filter(row -> {
-                    String scoreStr = scoreParserService.parse(row.get("lpi_score"));
-                    if (scoreStr != null && scoreStr.matches("^[0-9.]+$")) {
-                        return Double.parseDouble(scoreStr) > finalThreshold;
-                    }
-                    return false;
-                })
-                .collect(Collectors.toMap(
-                    row -> row.get("country").toString().replaceAll("\\s+", "").toUpperCase(), // 以大寫國家名為 Key (去重關鍵)
-                    row -> row,
-                    (existing, replacement) -> {
-                        // 如果遇到重複，保留分數較高的那筆
-                        double scoreExisting = Double.parseDouble(scoreParserService.parse(existing.get("lpi_score")));
-                        double scoreReplacement = Double.parseDouble(scoreParserService.parse(replacement.get("lpi_score")));
-                        return scoreExisting >= scoreReplacement ? existing : replacement;
-                    }
-                ))
-                .values().stream()
-                .sorted((a, b) -> { // 補上排序，確保表格從高分排到低分
-                    double sA = Double.parseDouble(scoreParserService.parse(a.get("lpi_score")));
-                    double sB = Double.parseDouble(scoreParserService.parse(b.get("lpi_score")));
-                    return Double.compare(sB, sA);
-                })
-                .collect(Collectors.toList());
+        List<Map<String, Object>> answers = askBatchService.askAll(questions);
+        return ResponseEntity.ok().header(SERVER_TIMING, askMetrics.serverTiming("batch", start)).body(answers);
     }
 
-            return data;
+    public record BatchRequest(List<String> questions) {}
 
-        } catch (Exception e) {
-            System.err.println("系統執行錯誤: " + e.getMessage());
-            return Map.of("error", "數據解析發生異常，請稍後再試。");
-        }
+    /**
+     * 串流問答：結果逐列以 NDJSON 送出（Accept: text/event-stream 時改用 SSE），最後一筆為 summary
+     *
+     * 大量資料不必等整份結果組完才開始回應，也不會在記憶體裡同時存在整份清單
+     */
+    @GetMapping("/ask/stream")
+    public ResponseEntity<StreamingResponseBody> askStream(@RequestParam String question,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        AskStreamService.Format format = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE)
+                ? AskStreamService.Format.SSE : AskStreamService.Format.NDJSON;
+        return ResponseEntity.ok().contentType(format.mediaType()).cacheControl(CacheControl.noStore())
+                .header("X-Accel-Buffering", "no")   // 避免反向代理整份緩衝
+                .body(out -> askStreamService.stream(question, out, format));
     }
 
     /**
-     * 計算區域平均值 (處理大小寫與髒資料)
+     * 先比對 ETag（資料未變就不必計算），再從結果快取取值；no-cache 讓瀏覽器每次都帶 If-None-Match 驗證
+     *
+     * 快取的是序列化後的 JSON，命中時連序列化都省下
      */
-    private Map<String, Double> calculateAverage(List<Map<String, Object>> data) {
-        if (data == null || data.isEmpty()) return Map.of();
-
-        return data.stream()
-                .filter(row -> row.get("region") != null && row.get("lpi_score") != null)
-                .map(row -> {
-                    String cleanedScore = scoreParserService.parse(row.get("lpi_score"));
-                    String normalizedRegion = row.get("region").toString().toUpperCase().trim();
-
-                    java.util.Map<String, Object> normalizedRow = new java.util.HashMap<>();
-                    normalizedRow.put("region", normalizedRegion);
-                    normalizedRow.put("lpi_score", cleanedScore);
-                    return normalizedRow;
-                })
-                .filter(row -> row.get("lpi_score").toString().matches("^[0-9.]+$"))
-                .collect(Collectors.groupingBy(
-                        row -> row.get("region").toString(),
-                        Collectors.averagingDouble(
-                                row -> Double.parseDouble(row.get("lpi_score").toString())
-                        )
-                ));
+    private ResponseEntity<Object> cached(String key, WebRequest webRequest, long start, Supplier<Object> loader) {
+        long version = datasetVersion.current();
+        String etag = ResultCache.etag(key, version);
+        if (webRequest.checkNotModified(etag)) {
+            // checkNotModified 已經寫入 304 與 ETag
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache())
+                    .header(SERVER_TIMING, askMetrics.serverTiming(start)).build();
+        }
+
+        Object json = resultCache.get(key, version, () -> toJson(loader.get()));
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(SERVER_TIMING, askMetrics.serverTiming(start))
+                .body(json);
+    }
+
+    private byte[] toJson(Object result) {
+        return askMetrics.time(Stage.SERIALIZE, () -> {
+            try {
+                return objectMapper.writeValueAsBytes(result);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
     }
-}
\ No newline at end of file
+}
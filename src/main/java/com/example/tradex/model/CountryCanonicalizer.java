@@ -0,0 +1,140 @@
+package com.example.tradex.model;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 國名正規化：原始國名 -> 穩定的 int 國家 id
+ *
+ * 1. 正規化只保留字母與數字並轉大寫（去掉空白、標點與重音），"Viet Nam" / "Vietnam" 都是 VIETNAM
+ * 2. 再查別名表，把世界銀行等資料來源的寫法對到同一個國家（"Korea, Rep." -> SOUTHKOREA）
+ * 3. 看過的原始字串直接查快取，已知國名每列只是一次雜湊查詢，不產生新字串
+ *
+ * 快照、區域彙總與 ScoreParserService 共用同一個實例，同一個國家在各處的 id 與 key 都相同。
+ * 國家種類有限（約兩百個），key 字典不回收；原始字串快取超過上限時整個清空。
+ */
+public final class CountryCanonicalizer {
+
+    // 別名 -> 標準寫法，兩邊都會先經過 normalize；jdbc 後端的 db/lpi-clean-postgres.sql（lpi_country_aliases）要同步修改
+    private static final String[][] ALIASES = {
+            {"Viet Nam", "Vietnam"},
+            {"Korea, Rep.", "South Korea"},
+            {"Korea, Republic of", "South Korea"},
+            {"Republic of Korea", "South Korea"},
+            {"Korea, Dem. People's Rep.", "North Korea"},
+            {"Democratic People's Republic of Korea", "North Korea"},
+            {"Russian Federation", "Russia"},
+            {"Iran, Islamic Rep.", "Iran"},
+            {"Islamic Republic of Iran", "Iran"},
+            {"Egypt, Arab Rep.", "Egypt"},
+            {"Hong Kong SAR, China", "Hong Kong"},
+            {"Hong Kong, China", "Hong Kong"},
+            {"Taiwan, China", "Taiwan"},
+            {"Chinese Taipei", "Taiwan"},
+            {"Lao PDR", "Laos"},
+            {"Lao People's Democratic Republic", "Laos"},
+            {"Turkey", "Turkiye"},
+            {"Czech Republic", "Czechia"},
+            {"Slovak Republic", "Slovakia"},
+            {"Kyrgyz Republic", "Kyrgyzstan"},
+            {"Syrian Arab Republic", "Syria"},
+            {"Venezuela, RB", "Venezuela"},
+            {"Yemen, Rep.", "Yemen"},
+            {"Gambia, The", "Gambia"},
+            {"The Gambia", "Gambia"},
+            {"Bahamas, The", "Bahamas"},
+            {"Congo, Dem. Rep.", "DR Congo"},
+            {"Democratic Republic of the Congo", "DR Congo"},
+            {"Congo, Rep.", "Congo"},
+            {"Republic of the Congo", "Congo"},
+            {"Ivory Coast", "Cote d'Ivoire"},
+            {"United States of America", "United States"},
+            {"USA", "United States"},
+            {"UK", "United Kingdom"},
+            {"Macedonia, FYR", "North Macedonia"},
+            {"Brunei Darussalam", "Brunei"},
+            {"Micronesia, Fed. Sts.", "Micronesia"},
+    };
+
+    private static final int MEMO_MAX_SIZE = 10_000;
+
+    // 放在別名表之後，靜態初始化時別名表已經建好
+    private static final CountryCanonicalizer SHARED = new CountryCanonicalizer();
+
+    private final Map<String, String> aliases = new HashMap<>();
+    private final Map<String, Integer> memo = new ConcurrentHashMap<>();
+
+    // key 字典：寫入時加鎖，讀取 key(id) 不加鎖
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private volatile String[] keys = new String[256];
+    private int size;
+
+    public CountryCanonicalizer() {
+        for (String[] alias : ALIASES) {
+            aliases.put(normalize(alias[0]), normalize(alias[1]));
+        }
+    }
+
+    /**
+     * 全應用共用的實例
+     */
+    public static CountryCanonicalizer shared() {
+        return SHARED;
+    }
+
+    /**
+     * 原始國名 -> 國家 id，null / 空白（沒有字母或數字）回傳 -1
+     */
+    public int idOf(String raw) {
+        if (raw == null) return -1;
+        Integer id = memo.get(raw);
+        if (id != null) return id;
+
+        String normalized = normalize(raw);
+        int newId = normalized.isEmpty() ? -1 : intern(aliases.getOrDefault(normalized, normalized));
+        if (memo.size() >= MEMO_MAX_SIZE) memo.clear();
+        memo.put(raw, newId);
+        return newId;
+    }
+
+    /**
+     * 國家 id 對應的去重 key（例如 VIETNAM、SOUTHKOREA），同分時依它排序
+     */
+    public String key(int id) {
+        return keys[id];
+    }
+
+    /**
+     * 目前配發過的國家 id 數量，id 介於 [0, size)
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int intern(String key) {
+        Integer id = keyIds.get(key);
+        if (id != null) return id;
+
+        if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+        keys[size] = key;
+        keyIds.put(key, size);
+        keys = keys;  // volatile 寫入，讓不加鎖的 key(id) 看得到新 key
+        return size++;
+    }
+
+    /**
+     * 去掉重音後只保留字母與數字並轉大寫
+     */
+    static String normalize(String raw) {
+        String folded = Normalizer.normalize(raw, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(folded.length());
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) sb.append(Character.toUpperCase(c));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.tradex.model;
+
+/**
+ * 串流解碼後的一列資料（不經過 Map，也沒有包裝型別）
+ *
+ * @param countryId 原始國名在快照字典中的 id，-1 表示沒有國名
+ * @param regionId  原始區域在快照字典中的 id，-1 表示沒有區域
+ * @param score     已清洗的分數，無法解析為 NaN
+ * @param year      年份，沒有為 0
+ */
+public record LpiRow(int countryId, int regionId, double score, int year) {}
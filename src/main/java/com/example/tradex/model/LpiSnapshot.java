@@ -0,0 +1,453 @@
+package com.example.tradex.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+
+import com.example.tradex.query.QueryPlan;
+import com.example.tradex.query.TopNSelector;
+
+/**
+ * countries_lpi 的常駐快照（欄式儲存）
+ *
+ * 每一列只存已清洗過的 double 分數、字典編碼後的國家 / 區域 id 與年份，
+ * 前 N 名、高於門檻、區域平均三種查詢直接在這些基本型別陣列上計算，
+ * 不需要再打 Supabase 或重新解析文字分數。
+ *
+ * 快照建立後不可變，背景刷新時整個物件替換即可。
+ */
+public final class LpiSnapshot {
+
+    /**
+     * rows() 提供的欄位
+     */
+    public static final Set<String> COLUMNS = Set.of("country", "region", "lpi_score", "year");
+
+    // executeAll 掃描的區塊大小（列數），與 ScoreParserService 相同
+    static final int CHUNK_SIZE = 4096;
+
+    // 欄位與字典由 LpiSnapshotFile 直接讀寫（package-private）
+    final int size;
+    final double[] scores;
+    final int[] countryIds;      // 去重用 key 的 id
+    final int[] countryNameIds;  // 原始國名（顯示用）的 id
+    final int[] regionIds;       // 原始區域字串的 id，-1 表示沒有區域
+    final int[] years;           // 0 表示沒有年份
+
+    final String[] countryKeys;
+    final String[] countryNames;
+    final String[] regionNames;
+    final int[] regionGroupIds;  // 原始區域 id -> 正規化（大寫）區域 id
+    final String[] regionGroups;
+
+    private final long loadedAt;
+
+    private LpiSnapshot(Builder b) {
+        this(b.size, Arrays.copyOf(b.scores, b.size), Arrays.copyOf(b.countryIds, b.size),
+                Arrays.copyOf(b.countryNameIds, b.size), Arrays.copyOf(b.regionIds, b.size),
+                Arrays.copyOf(b.years, b.size),
+                b.countryKeys.toArray(),
+                Arrays.stream(b.countryNames.toArray()).map(String::trim).toArray(String[]::new),
+                b.regionNames.toArray(),
+                b.regionGroupIdList.stream().mapToInt(Integer::intValue).toArray(),
+                b.regionGroups.toArray());
+    }
+
+    LpiSnapshot(int size, double[] scores, int[] countryIds, int[] countryNameIds, int[] regionIds, int[] years,
+                String[] countryKeys, String[] countryNames, String[] regionNames,
+                int[] regionGroupIds, String[] regionGroups) {
+        this.size = size;
+        this.scores = scores;
+        this.countryIds = countryIds;
+        this.countryNameIds = countryNameIds;
+        this.regionIds = regionIds;
+        this.years = years;
+        this.countryKeys = countryKeys;
+        this.countryNames = countryNames;
+        this.regionNames = regionNames;
+        this.regionGroupIds = regionGroupIds;
+        this.regionGroups = regionGroups;
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * 每一列以 country / region / lpi_score / year 的 Map 呈現（給 PostgrestQuery 在本地執行），
+     * 讀到哪一列才組那一列的 Map，不另存一份；快照沒有 id 欄位
+     */
+    public List<Map<String, Object>> rows() {
+        return new AbstractList<>() {
+            @Override
+            public Map<String, Object> get(int row) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("country", countryNameIds[row] < 0 ? null : countryNames[countryNameIds[row]]);
+                item.put("region", regionIds[row] < 0 ? null : regionNames[regionIds[row]]);
+                item.put("lpi_score", scores[row]);
+                item.put("year", years[row] == 0 ? null : years[row]);
+                return item;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * 前 N 名：每個國家取最高分，由高到低排序，並保留與第 N 名同分的國家
+     */
+    public List<Map<String, Object>> topN(Integer limit) {
+        return countries(QueryPlan.topN(limit == null ? 0 : limit));
+    }
+
+    /**
+     * 分數嚴格大於門檻的國家（可選擇只看某個區域，區域以不分大小寫的「包含」比對，等同 ilike.*xxx*）
+     */
+    public List<Map<String, Object>> above(double threshold, String regionFilter) {
+        return countries(QueryPlan.above(threshold, regionFilter));
+    }
+
+    /**
+     * 各區域平均分數（區域名稱統一大寫）
+     */
+    public Map<String, Double> averageByRegion() {
+        return averageByRegion(QueryPlan.averageByRegion());
+    }
+
+    /**
+     * 國家列表查詢：套用計畫中的分數 / 區域 / 年份條件後，每國取最高分，
+     * 由高到低排序並取前 limit 名（同分並列）
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> countries(QueryPlan plan) {
+        return (List<Map<String, Object>>) executeAll(List.of(plan)).get(0);
+    }
+
+    /**
+     * 各區域平均分數，套用計畫中的分數 / 區域 / 年份條件
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Double> averageByRegion(QueryPlan plan) {
+        return (Map<String, Double>) executeAll(List.of(plan)).get(0);
+    }
+
+    /**
+     * 一次掃過所有列回答多個計畫（批次問答用），結果與逐一呼叫 countries / averageByRegion 相同
+     */
+    public List<Object> executeAll(List<QueryPlan> plans) {
+        return executeAll(plans, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 同 executeAll，列數達 parallelThreshold 時各區塊在 pool 上平行掃描
+     *
+     * 列切成固定大小的區塊，各區塊各自累加再依區塊順序合併；區塊切法與是否平行無關，
+     * 所以循序 / 平行兩條路徑的結果（含浮點加總順序與同分取捨）完全相同
+     *
+     * @param pool 專用的 ForkJoinPool，null 表示一律循序
+     */
+    public List<Object> executeAll(List<QueryPlan> plans, ForkJoinPool pool, int parallelThreshold) {
+        int n = plans.size();
+        IntPredicate[] filters = new IntPredicate[n];
+        boolean[] average = new boolean[n];
+        for (int p = 0; p < n; p++) {
+            filters[p] = rowFilter(plans.get(p));
+            average[p] = plans.get(p).isAverage();
+        }
+
+        int chunks = Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        Partial[] partials = new Partial[chunks];
+        if (pool == null || pool.getParallelism() < 2 || size < parallelThreshold || chunks < 2) {
+            for (int c = 0; c < chunks; c++) partials[c] = scanChunk(c, filters, average);
+        } else {
+            pool.invoke(new ChunkTask(partials, 0, chunks, filters, average));
+        }
+
+        Partial total = partials[0];
+        for (int c = 1; c < chunks; c++) total.merge(partials[c], average);
+
+        List<Object> results = new ArrayList<>(n);
+        for (int p = 0; p < n; p++) {
+            results.add(average[p]
+                    ? toAverages(total.sums[p], total.counts[p])
+                    : toResult(selectBest(total.bestRows[p], plans.get(p).limit())));
+        }
+        return results;
+    }
+
+    /**
+     * 一個區塊的累加結果：區域平均的 sum / count，國家列表每國目前最佳的列
+     */
+    private final class Partial {
+        final double[][] sums;
+        final long[][] counts;
+        final int[][] bestRows;
+
+        Partial(boolean[] average) {
+            int n = average.length;
+            sums = new double[n][];
+            counts = new long[n][];
+            bestRows = new int[n][];
+            for (int p = 0; p < n; p++) {
+                if (average[p]) {
+                    sums[p] = new double[regionGroups.length];
+                    counts[p] = new long[regionGroups.length];
+                } else {
+                    bestRows[p] = new int[countryKeys.length];
+                    Arrays.fill(bestRows[p], -1);
+                }
+            }
+        }
+
+        /**
+         * 合併後面的區塊：同分時保留較早的列，與逐列掃描一致
+         */
+        void merge(Partial later, boolean[] average) {
+            for (int p = 0; p < average.length; p++) {
+                if (average[p]) {
+                    for (int g = 0; g < sums[p].length; g++) {
+                        sums[p][g] += later.sums[p][g];
+                        counts[p][g] += later.counts[p][g];
+                    }
+                } else {
+                    for (int id = 0; id < bestRows[p].length; id++) {
+                        int row = later.bestRows[p][id];
+                        int current = bestRows[p][id];
+                        if (row >= 0 && (current < 0 || scores[row] > scores[current])) bestRows[p][id] = row;
+                    }
+                }
+            }
+        }
+    }
+
+    private Partial scanChunk(int chunk, IntPredicate[] filters, boolean[] average) {
+        Partial partial = new Partial(average);
+        int from = chunk * CHUNK_SIZE;
+        int to = Math.min(size, from + CHUNK_SIZE);
+        for (int row = from; row < to; row++) {
+            for (int p = 0; p < filters.length; p++) {
+                if (!filters[p].test(row)) continue;
+                if (average[p]) {
+                    if (regionIds[row] < 0) continue;
+                    int group = regionGroupIds[regionIds[row]];
+                    partial.sums[p][group] += scores[row];
+                    partial.counts[p][group]++;
+                } else {
+                    int countryId = countryIds[row];
+                    if (countryId < 0) continue;
+                    int current = partial.bestRows[p][countryId];
+                    // 同分保留先出現的那筆
+                    if (current < 0 || scores[row] > scores[current]) partial.bestRows[p][countryId] = row;
+                }
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * 對區塊區間 [from, to) 二分遞迴，每個區塊的結果寫進自己的格子
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private final Partial[] partials;
+        private final int from;
+        private final int to;
+        private final IntPredicate[] filters;
+        private final boolean[] average;
+
+        ChunkTask(Partial[] partials, int from, int to, IntPredicate[] filters, boolean[] average) {
+            this.partials = partials;
+            this.from = from;
+            this.to = to;
+            this.filters = filters;
+            this.average = average;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                partials[from] = scanChunk(from, filters, average);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(partials, from, mid, filters, average),
+                    new ChunkTask(partials, mid, to, filters, average));
+        }
+    }
+
+    private Map<String, Double> toAverages(double[] sums, long[] counts) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int g = 0; g < regionGroups.length; g++) {
+            if (counts[g] > 0) result.put(regionGroups[g], sums[g] / counts[g]);
+        }
+        return result;
+    }
+
+    private IntPredicate rowFilter(QueryPlan plan) {
+        boolean[] regionMatch = matchRegions(plan.region());
+        int year = plan.year() == null ? 0 : plan.year();
+        return row -> plan.acceptsScore(scores[row])
+                && (regionMatch == null || (regionIds[row] >= 0 && regionMatch[regionIds[row]]))
+                && (year == 0 || years[row] == year);
+    }
+
+    /**
+     * 依分數由高到低取前 limit 名（同分並列，同分依國家 key 排序），limit <= 0 表示全部
+     */
+    private List<Integer> selectBest(int[] bestRow, int limit) {
+        TopNSelector<Integer> selector = new TopNSelector<>(
+                limit, row -> scores[row], Comparator.comparing(row -> countryKeys[countryIds[row]]));
+        for (int row : bestRow) {
+            if (row >= 0) selector.offer(row);
+        }
+        return selector.result();
+    }
+
+    private boolean[] matchRegions(String regionFilter) {
+        if (regionFilter == null || regionFilter.isBlank()) return null;
+
+        String needle = regionFilter.trim().toLowerCase();
+        boolean[] match = new boolean[regionNames.length];
+        for (int i = 0; i < regionNames.length; i++) {
+            match[i] = regionNames[i].toLowerCase().contains(needle);
+        }
+        return match;
+    }
+
+    private List<Map<String, Object>> toResult(List<Integer> rows) {
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (int row : rows) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("country", countryNames[countryNameIds[row]]);
+            item.put("region", regionIds[row] < 0 ? null : regionNames[regionIds[row]]);
+            item.put("lpi_score", scores[row]);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 逐列累加的建構器，分數需事先清洗成 double
+     *
+     * 國名 / 區域以原始字串做字典編碼，正規化（CountryCanonicalizer 的去重 key、大寫區域）
+     * 每個不同的字串只算一次，不會每列重算。
+     */
+    public static class Builder {
+        private int size;
+        private double[] scores = new double[256];
+        private int[] countryIds = new int[256];
+        private int[] countryNameIds = new int[256];
+        private int[] regionIds = new int[256];
+        private int[] years = new int[256];
+
+        private final StringDictionary countryKeys = new StringDictionary();
+        private final StringDictionary countryNames = new StringDictionary();
+        private final List<Integer> countryKeyIdList = new ArrayList<>();
+        private final StringDictionary regionNames = new StringDictionary();
+        private final StringDictionary regionGroups = new StringDictionary();
+        private final List<Integer> regionGroupIdList = new ArrayList<>();
+
+        /**
+         * 原始國名 -> 字典 id，null / 空白回傳 -1（該列只參與區域平均）
+         */
+        public int internCountry(String country) {
+            if (country == null) return -1;
+            int nameId = countryNames.find(country);
+            if (nameId >= 0) return nameId;
+            int canonicalId = CountryCanonicalizer.shared().idOf(country);
+            if (canonicalId < 0) return -1;
+
+            nameId = countryNames.idOf(country);
+            countryKeyIdList.add(countryKeys.idOf(CountryCanonicalizer.shared().key(canonicalId)));
+            return nameId;
+        }
+
+        /**
+         * 原始區域 -> 字典 id，null 回傳 -1
+         */
+        public int internRegion(String region) {
+            if (region == null) return -1;
+            int regionId = regionNames.idOf(region);
+            if (regionId == regionGroupIdList.size()) {
+                regionGroupIdList.add(regionGroups.idOf(region.toUpperCase().trim()));
+            }
+            return regionId;
+        }
+
+        /**
+         * @param country 原始國名，null / 空白的列只參與區域平均
+         * @param region  原始區域，null 表示沒有區域
+         * @param score   已清洗的分數
+         * @param year    年份，沒有就給 0
+         */
+        public Builder add(String country, String region, double score, int year) {
+            return add(new LpiRow(internCountry(country), internRegion(region), score, year));
+        }
+
+        /**
+         * 加入一列已編碼的資料，id 必須來自這個 Builder 的 intern 方法
+         */
+        public Builder add(LpiRow row) {
+            ensureCapacity();
+
+            scores[size] = row.score();
+            countryNameIds[size] = row.countryId();
+            countryIds[size] = row.countryId() < 0 ? -1 : countryKeyIdList.get(row.countryId());
+            regionIds[size] = row.regionId();
+            years[size] = row.year();
+            size++;
+            return this;
+        }
+
+        /**
+         * 依序附加另一個 Builder 的所有列（分段讀取的合併），字典 id 每個不同字串只換算一次
+         */
+        public Builder addAll(Builder other) {
+            int[] countryMap = new int[other.countryNames.size()];
+            for (int i = 0; i < countryMap.length; i++) countryMap[i] = internCountry(other.countryNames.valueOf(i));
+            int[] regionMap = new int[other.regionNames.size()];
+            for (int i = 0; i < regionMap.length; i++) regionMap[i] = internRegion(other.regionNames.valueOf(i));
+
+            for (int row = 0; row < other.size; row++) {
+                int countryId = other.countryNameIds[row];
+                int regionId = other.regionIds[row];
+                add(new LpiRow(countryId < 0 ? -1 : countryMap[countryId], regionId < 0 ? -1 : regionMap[regionId],
+                        other.scores[row], other.years[row]));
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public LpiSnapshot build() {
+            return new LpiSnapshot(this);
+        }
+
+        private void ensureCapacity() {
+            if (size < scores.length) return;
+            int newLength = scores.length * 2;
+            scores = Arrays.copyOf(scores, newLength);
+            countryIds = Arrays.copyOf(countryIds, newLength);
+            countryNameIds = Arrays.copyOf(countryNameIds, newLength);
+            regionIds = Arrays.copyOf(regionIds, newLength);
+            years = Arrays.copyOf(years, newLength);
+        }
+    }
+}
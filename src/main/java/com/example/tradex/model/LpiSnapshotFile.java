@@ -0,0 +1,202 @@
+package com.example.tradex.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.zip.CRC32C;
+
+/**
+ * LpiSnapshot 的二進位快照檔：啟動時直接 mmap 載入，不必等 Supabase 讀取與分數清洗
+ *
+ * 格式（little-endian）：
+ * <pre>
+ * header  magic "LPIS" | 格式版本 | 列數 | 保留 | 寫入時間 (long) | body 長度 (long) | body 的 CRC32C | 保留
+ * body    驗證值（ETag 或內容摘要）
+ *         字典：countryKeys / countryNames / regionNames / regionGroups（個數 + 每個字串的長度與 UTF-8）
+ *         regionGroupIds（個數 + int）
+ *         補齊到 8 bytes 後的固定寬度欄位：scores (double) | years | countryIds | countryNameIds | regionIds (int)
+ * </pre>
+ *
+ * 讀取時整段 mmap，欄位以 bulk copy 一次搬進 LpiSnapshot 的基本型別陣列（查詢熱路徑不變），
+ * 檔案本身經由 page cache 讀取，同一台主機上的副本重啟時通常不必碰磁碟。
+ *
+ * 寫入時先寫同目錄的暫存檔再原子 rename，同一台主機上的多個副本讀到的一定是完整的檔案；
+ * 已 mmap 的舊檔不受 rename 影響。清洗或國名正規化規則改變時請遞增 FORMAT_VERSION，讓舊檔失效。
+ */
+public final class LpiSnapshotFile {
+
+    static final int MAGIC = 0x5349504C;   // "LPIS"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 40;
+
+    private LpiSnapshotFile() {
+    }
+
+    /**
+     * 讀到的快照、寫入時的資料驗證值與寫入時間
+     */
+    public record Loaded(LpiSnapshot snapshot, String validator, long savedAt) {}
+
+    /**
+     * 以 mmap 讀取快照檔；格式版本不符、長度不對或 CRC 不符時丟 IOException
+     */
+    public static Loaded read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) throw new IOException("快照檔過短：" + fileSize + " bytes");
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt() != MAGIC) throw new IOException("不是 LPI 快照檔");
+            int version = mapped.getInt();
+            if (version != FORMAT_VERSION) throw new IOException("快照檔格式版本 " + version + " 與目前的 " + FORMAT_VERSION + " 不符");
+            int rows = mapped.getInt();
+            mapped.getInt();
+            long savedAt = mapped.getLong();
+            long bodyLength = mapped.getLong();
+            int crc = mapped.getInt();
+            if (rows < 0 || bodyLength != fileSize - HEADER_BYTES) throw new IOException("快照檔長度不符");
+
+            ByteBuffer body = mapped.slice(HEADER_BYTES, (int) bodyLength).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32C checksum = new CRC32C();
+            checksum.update(body.duplicate());
+            if ((int) checksum.getValue() != crc) throw new IOException("快照檔 CRC 不符，檔案可能已損毀");
+
+            try {
+                String validator = readString(body);
+                String[] countryKeys = readStrings(body);
+                String[] countryNames = readStrings(body);
+                String[] regionNames = readStrings(body);
+                String[] regionGroups = readStrings(body);
+                int[] regionGroupIds = readInts(body, body.getInt());
+                body.position(align8(body.position()));
+
+                double[] scores = new double[rows];
+                body.asDoubleBuffer().get(scores);
+                body.position(body.position() + rows * Double.BYTES);
+                int[] years = readInts(body, rows);
+                int[] countryIds = readInts(body, rows);
+                int[] countryNameIds = readInts(body, rows);
+                int[] regionIds = readInts(body, rows);
+
+                LpiSnapshot snapshot = new LpiSnapshot(rows, scores, countryIds, countryNameIds, regionIds, years,
+                        countryKeys, countryNames, regionNames, regionGroupIds, regionGroups);
+                return new Loaded(snapshot, validator, savedAt);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+                throw new IOException("快照檔內容不完整", e);
+            }
+        }
+    }
+
+    /**
+     * 寫入快照檔：先寫暫存檔並 fsync，再原子 rename 成 file
+     */
+    public static void write(Path file, LpiSnapshot snapshot, String validator) throws IOException {
+        ByteBuffer body = encodeBody(snapshot, validator);
+        CRC32C checksum = new CRC32C();
+        checksum.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(snapshot.size).putInt(0)
+                .putLong(System.currentTimeMillis()).putLong(body.remaining()).putInt((int) checksum.getValue()).putInt(0);
+        header.flip();
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (header.hasRemaining()) channel.write(header);
+                while (body.hasRemaining()) channel.write(body);
+                channel.force(true);
+            }
+            // createTempFile 預設只有擁有者可讀，其他帳號執行的副本也要能讀
+            if (Files.getFileStore(tmp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-r--r--"));
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static ByteBuffer encodeBody(LpiSnapshot snapshot, String validator) {
+        byte[][][] dictionaries = {
+                utf8(snapshot.countryKeys), utf8(snapshot.countryNames),
+                utf8(snapshot.regionNames), utf8(snapshot.regionGroups)};
+        byte[] validatorBytes = validator.getBytes(StandardCharsets.UTF_8);
+
+        long length = Integer.BYTES + validatorBytes.length;
+        for (byte[][] dictionary : dictionaries) {
+            length += Integer.BYTES;
+            for (byte[] value : dictionary) length += Integer.BYTES + value.length;
+        }
+        length += Integer.BYTES + (long) snapshot.regionGroupIds.length * Integer.BYTES;
+        length = align8((int) length);
+        length += (long) snapshot.size * (Double.BYTES + 4 * Integer.BYTES);
+        if (length > Integer.MAX_VALUE) throw new IllegalStateException("快照過大，無法寫成單一檔案");
+
+        ByteBuffer body = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        body.putInt(validatorBytes.length).put(validatorBytes);
+        for (byte[][] dictionary : dictionaries) {
+            body.putInt(dictionary.length);
+            for (byte[] value : dictionary) body.putInt(value.length).put(value);
+        }
+        body.putInt(snapshot.regionGroupIds.length);
+        for (int id : snapshot.regionGroupIds) body.putInt(id);
+        body.position(align8(body.position()));
+
+        int rows = snapshot.size;
+        body.asDoubleBuffer().put(snapshot.scores, 0, rows);
+        body.position(body.position() + rows * Double.BYTES);
+        for (int[] column : new int[][] {snapshot.years, snapshot.countryIds, snapshot.countryNameIds, snapshot.regionIds}) {
+            body.asIntBuffer().put(column, 0, rows);
+            body.position(body.position() + rows * Integer.BYTES);
+        }
+        return body.flip();
+    }
+
+    private static byte[][] utf8(String[] values) {
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        return encoded;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) values[i] = readString(buffer);
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static int align8(int position) {
+        return (position + 7) & ~7;
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.tradex.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 增量維護的區域彙總：每個區域（以及區域 x 年份）的 sum / count / min / max，
+ * 加上每個國家的最高分。
+ *
+ * 資料以 countries_lpi 的 id 為單位新增 / 修改 / 刪除，只調整受影響的彙總，
+ * 區域平均讀取 O(區域數) 的狀態，前 N 名只走訪排好序的各國最高分前 N 筆，
+ * 不必每次請求都重掃全部資料。
+ *
+ * 與 LpiSnapshot 的規則一致：區域以去空白大寫分組，沒有區域的列不進區域平均，
+ * 國家以 CountryCanonicalizer 的 key 去重（含別名），沒有國名的列只進區域平均；同分時保留 id 較小的那筆。
+ */
+public final class RegionalAggregates {
+
+    /**
+     * 一筆變更：score 為 NaN（分數無法解析）視同刪除
+     */
+    public record Update(long id, String country, String region, double score, int year) {}
+
+    /**
+     * 某個區域（或區域 x 年份）的彙總
+     */
+    public record Stats(double sum, long count, double min, double max) {
+        public double average() {
+            return sum / count;
+        }
+    }
+
+    private record Entry(long id, String countryKey, String country, String region, String regionGroup,
+                         double score, int year) {}
+
+    private static final Comparator<Entry> BEST_ORDER = Comparator
+            .comparingDouble(Entry::score).reversed()
+            .thenComparing(Entry::countryKey);
+
+    private static final class Accumulator {
+        double sum;
+        long count;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        boolean stale;  // 移除的列剛好是 min / max，需要重算
+
+        void add(double score) {
+            sum += score;
+            count++;
+            if (score < min) min = score;
+            if (score > max) max = score;
+        }
+
+        void remove(double score) {
+            sum -= score;
+            count--;
+            if (score <= min || score >= max) stale = true;
+        }
+
+        void reset() {
+            sum = 0;
+            count = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            stale = false;
+        }
+
+        Stats toStats() {
+            return new Stats(sum, count, min, max);
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Entry> rows = new HashMap<>();
+    private final Map<String, Accumulator> byRegion = new LinkedHashMap<>();
+    private final Map<String, Map<Integer, Accumulator>> byRegionYear = new HashMap<>();
+    private final Map<String, Set<Long>> rowsByCountry = new HashMap<>();
+    private final Map<String, Entry> bestByCountry = new HashMap<>();
+    private final TreeSet<Entry> ranking = new TreeSet<>(BEST_ORDER);
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 套用一批變更（新增或修改）；同一批內只在最後補算一次失效的 min / max
+     */
+    public void apply(List<Update> updates) {
+        lock.writeLock().lock();
+        try {
+            Set<String> touchedCountries = new HashSet<>();
+            for (Update update : updates) {
+                Entry previous = rows.remove(update.id());
+                if (previous != null) unlink(previous, touchedCountries);
+                if (!Double.isNaN(update.score())) link(toEntry(update), touchedCountries);
+            }
+            touchedCountries.forEach(this::rankCountry);
+            repairStale();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 刪除指定 id 的列
+     */
+    public void remove(Set<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            Set<String> touchedCountries = new HashSet<>();
+            for (Long id : ids) {
+                Entry previous = rows.remove(id);
+                if (previous != null) unlink(previous, touchedCountries);
+            }
+            touchedCountries.forEach(this::rankCountry);
+            repairStale();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 各區域平均分數（區域大寫），可選擇只看包含 regionFilter 的區域、只看某一年（null 表示不限）
+     */
+    public Map<String, Double> averageByRegion(String regionFilter, Integer year) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        statsByRegion(regionFilter, year).forEach((region, stats) -> result.put(region, stats.average()));
+        return result;
+    }
+
+    /**
+     * 各區域的 sum / count / min / max，篩選規則同 averageByRegion
+     */
+    public Map<String, Stats> statsByRegion(String regionFilter, Integer year) {
+        String needle = regionFilter == null || regionFilter.isBlank() ? null : regionFilter.trim().toLowerCase();
+
+        lock.readLock().lock();
+        try {
+            Map<String, Stats> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Accumulator> e : byRegion.entrySet()) {
+                String region = e.getKey();
+                if (needle != null && !region.toLowerCase().contains(needle)) continue;
+
+                Accumulator acc = year == null ? e.getValue() : byRegionYear.get(region).get(year);
+                if (acc != null && acc.count > 0) result.put(region, acc.toStats());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 各國最高分由高到低取前 limit 名（同分並列，同分依國家 key 排序），
+     * minScore 不為 null 時只取最高分嚴格大於它的國家；limit <= 0 表示全部
+     */
+    public List<Map<String, Object>> countries(int limit, Double minScore) {
+        lock.readLock().lock();
+        try {
+            List<Map<String, Object>> result = new ArrayList<>();
+            double cutoff = Double.NaN;
+            for (Entry best : ranking) {
+                if (minScore != null && best.score() <= minScore) break;
+                if (limit > 0 && result.size() >= limit && best.score() != cutoff) break;
+
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("country", best.country());
+                item.put("region", best.region());
+                item.put("lpi_score", best.score());
+                result.add(item);
+                cutoff = best.score();
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Entry toEntry(Update u) {
+        String country = u.country();
+        int countryId = CountryCanonicalizer.shared().idOf(country);
+        String countryKey = countryId < 0 ? null : CountryCanonicalizer.shared().key(countryId);
+        String regionGroup = u.region() == null ? null : u.region().toUpperCase().trim();
+        return new Entry(u.id(), countryKey, country == null ? null : country.trim(), u.region(), regionGroup,
+                u.score(), u.year());
+    }
+
+    private void link(Entry entry, Set<String> touchedCountries) {
+        rows.put(entry.id(), entry);
+        if (entry.regionGroup() != null) {
+            byRegion.computeIfAbsent(entry.regionGroup(), k -> new Accumulator()).add(entry.score());
+            byRegionYear.computeIfAbsent(entry.regionGroup(), k -> new HashMap<>())
+                    .computeIfAbsent(entry.year(), k -> new Accumulator()).add(entry.score());
+        }
+        if (entry.countryKey() != null) {
+            rowsByCountry.computeIfAbsent(entry.countryKey(), k -> new HashSet<>()).add(entry.id());
+            touchedCountries.add(entry.countryKey());
+        }
+    }
+
+    private void unlink(Entry entry, Set<String> touchedCountries) {
+        if (entry.regionGroup() != null) {
+            byRegion.get(entry.regionGroup()).remove(entry.score());
+            byRegionYear.get(entry.regionGroup()).get(entry.year()).remove(entry.score());
+        }
+        if (entry.countryKey() != null) {
+            rowsByCountry.get(entry.countryKey()).remove(entry.id());
+            touchedCountries.add(entry.countryKey());
+        }
+    }
+
+    /**
+     * 重新決定某國的最高分（一個國家通常只有幾個年份，直接掃它自己的列）
+     */
+    private void rankCountry(String countryKey) {
+        Entry previous = bestByCountry.remove(countryKey);
+        if (previous != null) ranking.remove(previous);
+
+        Set<Long> ids = rowsByCountry.get(countryKey);
+        Entry best = null;
+        if (ids != null) {
+            for (Long id : ids) {
+                Entry candidate = rows.get(id);
+                if (best == null || candidate.score() > best.score()
+                        || (candidate.score() == best.score() && candidate.id() < best.id())) {
+                    best = candidate;
+                }
+            }
+        }
+        if (best == null) {
+            rowsByCountry.remove(countryKey);
+            return;
+        }
+        bestByCountry.put(countryKey, best);
+        ranking.add(best);
+    }
+
+    /**
+     * min / max 無法直接扣回，失效的區域一起重掃一次（只在移除的剛好是極值時發生），
+     * 順便重算 sum 消除反覆加減的浮點誤差
+     */
+    private void repairStale() {
+        Set<String> staleRegions = new HashSet<>();
+        byRegion.forEach((region, acc) -> {
+            if (acc.stale) staleRegions.add(region);
+        });
+        byRegionYear.forEach((region, years) -> years.values().forEach(acc -> {
+            if (acc.stale) staleRegions.add(region);
+        }));
+        if (staleRegions.isEmpty()) return;
+
+        for (String region : staleRegions) {
+            byRegion.get(region).reset();
+            byRegionYear.get(region).values().forEach(Accumulator::reset);
+        }
+        for (Entry entry : rows.values()) {
+            if (entry.regionGroup() == null || !staleRegions.contains(entry.regionGroup())) continue;
+            byRegion.get(entry.regionGroup()).add(entry.score());
+            byRegionYear.get(entry.regionGroup()).get(entry.year()).add(entry.score());
+        }
+    }
+}
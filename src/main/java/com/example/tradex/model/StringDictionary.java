@@ -0,0 +1,49 @@
+package com.example.tradex.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 字典編碼器：把重複出現的字串（國家、區域）壓成連續的 int id，
+ * 讓快照可以用 int[] 欄位取代大量 String 參照。
+ */
+public class StringDictionary {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * 取得字串的 id，第一次出現時自動配發新 id
+     */
+    public int idOf(String value) {
+        Integer id = ids.get(value);
+        if (id != null) return id;
+
+        int newId = values.size();
+        ids.put(value, newId);
+        values.add(value);
+        return newId;
+    }
+
+    /**
+     * 只查詢不配發，找不到回傳 -1
+     */
+    public int find(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public String valueOf(int id) {
+        return values.get(id);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public String[] toArray() {
+        return values.toArray(new String[0]);
+    }
+}
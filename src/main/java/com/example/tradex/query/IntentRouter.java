@@ -0,0 +1,251 @@
+package com.example.tradex.query;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+import com.example.tradex.service.ScoreParserService;
+
+/**
+ * 常見問題的快速路由：中英文問句直接轉成 QueryPlan，不必呼叫 LLM
+ *
+ * 支援：前 N 名、分數高於 / 低於 X、區域平均，並可附帶區域（Asia / 亞洲）與年份條件。
+ * 無法辨識的問題回傳 empty，交給 AiService 處理。
+ * 問句中的每個字都必須是辨識到的條件或常見的填充字（which、countries、國家…），
+ * 有其他內容（國名、否定、排除條件、"what does X mean"）時也交給 LLM，不用快速路徑給出答非所問的結果。
+ * 前 N 名的 N 最多到 PostgrestQuery.MAX_LIMIT；超出 int 範圍的數字視為無法辨識。
+ */
+@Component
+public class IntentRouter {
+
+    private static final Pattern AVERAGE = Pattern.compile("(?i)\\baverage\\b|\\bavg\\b|平均");
+
+    // 「前 N 名」的問法：top 20 / top five / top twenty-one / 前 10 / 前十五
+    private static final Pattern TOP_DIGITS = Pattern.compile("(?i)\\btop\\s*(\\d+)|前\\s*(\\d+)");
+    private static final Pattern TOP_WORDS = Pattern.compile("(?i)\\btop\\s+([a-z]+)(?:[- ]([a-z]+))?");
+    private static final Pattern TOP_CHINESE = Pattern.compile("前([零一二兩三四五六七八九十百]+)");
+
+    // 門檻數字要跟在關鍵字後面（中間可夾 "an LPI score of" 之類的字），避免誤抓年份；group 1 為關鍵字、group 2 為數字
+    private static final Pattern ABOVE = Pattern.compile(
+            "(?i)(\\b(?:above|over|greater than|higher than|more than|exceed(?:s|ing)?)\\b|>|高於|大於|超過)\\D{0,25}?(\\d+(?:\\.\\d+)?)");
+    private static final Pattern BELOW = Pattern.compile(
+            "(?i)(\\b(?:below|under|less than|lower than)\\b|<|低於|小於|少於)\\D{0,25}?(\\d+(?:\\.\\d+)?)");
+
+    // parseTopN：是排名問題但 N 無法使用（例如超出 int 範圍）
+    private static final int UNUSABLE = -1;
+
+    private static final Pattern YEAR = Pattern.compile("(?<!\\d)(20\\d{2})(?!\\d)");
+
+    // 條件以外允許出現的字：英文以字為單位比對，中文以片語移除（較長的放前面）
+    private static final Set<String> FILLER_WORDS = Set.of(
+            "which", "what", "what's", "whats", "show", "me", "list", "give", "display", "find", "get",
+            "the", "a", "an", "of", "in", "for", "by", "with", "from", "per", "each", "all", "please",
+            "is", "are", "have", "has", "their",
+            "country", "countries", "nation", "nations", "lpi", "score", "scores", "logistics", "performance",
+            "region", "regions", "regional", "year", "ranking", "ranked", "highest", "best");
+    private static final List<String> FILLER_PHRASES = List.of(
+            "物流表現", "是多少", "有哪些", "多少", "哪些", "國家", "區域", "地區", "分數", "物流", "表現",
+            "顯示", "列出", "排名", "以上", "以下", "請", "各", "名", "的", "年", "在", "中");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+(?:'\\p{L}+)?");
+
+    // 區域別名 -> 比對用關鍵字（比對方式與 region=ilike.*xxx* 相同），較長的放前面
+    private static final Map<Pattern, String> REGION_ALIASES = new LinkedHashMap<>();
+
+    static {
+        REGION_ALIASES.put(Pattern.compile("(?i)north(?:ern)?\\s+america|北美"), "North America");
+        REGION_ALIASES.put(Pattern.compile("(?i)south(?:ern)?\\s+america|latin\\s+america|南美|拉丁美洲"), "South America");
+        REGION_ALIASES.put(Pattern.compile("(?i)middle\\s+east|中東"), "Middle East");
+        REGION_ALIASES.put(Pattern.compile("(?i)\\basia(?:n)?\\b|亞洲"), "Asia");
+        REGION_ALIASES.put(Pattern.compile("(?i)\\beurope(?:an)?\\b|歐洲"), "Europe");
+        REGION_ALIASES.put(Pattern.compile("(?i)\\bafrica(?:n)?\\b|非洲"), "Africa");
+        REGION_ALIASES.put(Pattern.compile("(?i)\\bamerica(?:s)?\\b|美洲"), "America");
+        REGION_ALIASES.put(Pattern.compile("(?i)\\boceania\\b|大洋洲"), "Oceania");
+    }
+
+    private final ScoreParserService scoreParserService;
+
+    private final Map<QueryPlan.Intent, AtomicLong> hits = new EnumMap<>(QueryPlan.Intent.class);
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public IntentRouter(ScoreParserService scoreParserService) {
+        this.scoreParserService = scoreParserService;
+        for (QueryPlan.Intent intent : QueryPlan.Intent.values()) {
+            hits.put(intent, new AtomicLong());
+        }
+    }
+
+    public Optional<QueryPlan> route(String question) {
+        QueryPlan plan = classify(question);
+        if (plan == null) {
+            fallbacks.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.get(plan.intent()).incrementAndGet();
+        return Optional.of(plan);
+    }
+
+    /**
+     * 各類型命中次數、交給 LLM 的次數與整體命中率
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long total = fallbacks.get();
+        for (Map.Entry<QueryPlan.Intent, AtomicLong> e : hits.entrySet()) {
+            long count = e.getValue().get();
+            result.put(e.getKey().name(), count);
+            total += count;
+        }
+        result.put("LLM_FALLBACK", fallbacks.get());
+        result.put("hitRate", total == 0 ? 0.0 : (double) (total - fallbacks.get()) / total);
+        return result;
+    }
+
+    private QueryPlan classify(String question) {
+        // 辨識到的條件在 rest 裡塗成空白，最後檢查剩下的都是填充字
+        StringBuilder rest = new StringBuilder(question);
+        String region = parseRegion(question, rest);
+        Integer year = parseYear(question, rest);
+        Double minScore = parseNumber(ABOVE, question, rest);
+        Double maxScore = parseNumber(BELOW, question, rest);
+
+        QueryPlan plan;
+        Matcher average = AVERAGE.matcher(question);
+        if (average.find()) {
+            blank(rest, average.start(), average.end());
+            plan = new QueryPlan(QueryPlan.Intent.AVERAGE_BY_REGION, 0, minScore, maxScore, region, year);
+        } else {
+            Integer topN = parseTopN(question, rest);
+            if (topN != null && topN == UNUSABLE) return null;
+            if (topN != null) {
+                plan = new QueryPlan(QueryPlan.Intent.TOP_N, topN, minScore, maxScore, region, year);
+            } else if (minScore != null) {
+                plan = new QueryPlan(QueryPlan.Intent.SCORE_ABOVE, 0, minScore, maxScore, region, year);
+            } else if (maxScore != null) {
+                plan = new QueryPlan(QueryPlan.Intent.SCORE_BELOW, 0, null, maxScore, region, year);
+            } else {
+                return null;
+            }
+        }
+        return onlyFiller(rest.toString()) ? plan : null;
+    }
+
+    /**
+     * 塗掉條件後剩下的內容是否全是填充字
+     */
+    private boolean onlyFiller(String rest) {
+        String text = rest.toLowerCase(Locale.ROOT).replace('’', '\'');
+        for (String phrase : FILLER_PHRASES) {
+            text = text.replace(phrase, " ");
+        }
+        Matcher m = WORD.matcher(text);
+        while (m.find()) {
+            if (!FILLER_WORDS.contains(m.group())) return false;
+        }
+        return true;
+    }
+
+    private static void blank(StringBuilder rest, int start, int end) {
+        for (int i = start; i < end; i++) rest.setCharAt(i, ' ');
+    }
+
+    private Double parseNumber(Pattern pattern, String question, StringBuilder rest) {
+        Matcher m = pattern.matcher(question);
+        if (!m.find()) return null;
+        // 關鍵字與數字之間的字（"an LPI score of"）留著檢查
+        blank(rest, m.start(1), m.end(1));
+        blank(rest, m.start(2), m.end(2));
+        return Double.valueOf(m.group(2));
+    }
+
+    private String parseRegion(String question, StringBuilder rest) {
+        for (Map.Entry<Pattern, String> e : REGION_ALIASES.entrySet()) {
+            Matcher m = e.getKey().matcher(question);
+            if (m.find()) {
+                blank(rest, m.start(), m.end());
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    private Integer parseYear(String question, StringBuilder rest) {
+        Matcher m = YEAR.matcher(question);
+        if (!m.find()) return null;
+        blank(rest, m.start(), m.end());
+        return Integer.valueOf(m.group(1));
+    }
+
+    /**
+     * 取出「前 N 名」的 N，不是排名問題回傳 null，N 超出 int 範圍回傳 UNUSABLE
+     */
+    private Integer parseTopN(String question, StringBuilder rest) {
+        Matcher m = TOP_DIGITS.matcher(question);
+        if (m.find()) {
+            blank(rest, m.start(), m.end());
+            String digits = m.group(1) != null ? m.group(1) : m.group(2);
+            try {
+                return positiveOrNull(Integer.parseInt(digits));
+            } catch (NumberFormatException e) {
+                return UNUSABLE;
+            }
+        }
+
+        m = TOP_WORDS.matcher(question);
+        if (m.find()) {
+            // 先試兩個字（twenty one），再試一個字（five）
+            int n = m.group(2) == null ? -1
+                    : scoreParserService.parseNumberWord(m.group(1).toLowerCase() + " " + m.group(2).toLowerCase());
+            int end = n >= 0 ? m.end(2) : m.end(1);
+            if (n < 0) n = scoreParserService.parseNumberWord(m.group(1).toLowerCase());
+            if (n > 0) {
+                blank(rest, m.start(), end);
+                return n;
+            }
+        }
+
+        m = TOP_CHINESE.matcher(question);
+        if (m.find()) {
+            blank(rest, m.start(), m.end());
+            return positiveOrNull(parseChineseNumber(m.group(1)));
+        }
+        return null;
+    }
+
+    /**
+     * 簡單的中文數字轉換（到百位）：五 -> 5、十五 -> 15、二十 -> 20、兩百 -> 200
+     */
+    private int parseChineseNumber(String text) {
+        String digits = "零一二三四五六七八九";
+        int total = 0;
+        int current = 0;
+        for (char c : text.toCharArray()) {
+            int d = c == '兩' ? 2 : digits.indexOf(c);
+            if (d >= 0) {
+                current = d;
+            } else if (c == '十') {
+                total += (current == 0 ? 1 : current) * 10;
+                current = 0;
+            } else if (c == '百') {
+                total += (current == 0 ? 1 : current) * 100;
+                current = 0;
+            }
+        }
+        return total + current;
+    }
+
+    /**
+     * 0 以下回傳 null，超過 PostgrestQuery.MAX_LIMIT 時以上限為準
+     */
+    private Integer positiveOrNull(int n) {
+        return n > 0 ? Math.min(n, PostgrestQuery.MAX_LIMIT) : null;
+    }
+}
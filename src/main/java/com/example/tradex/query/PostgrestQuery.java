@@ -0,0 +1,558 @@
+package com.example.tradex.query;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+
+/**
+ * LLM 產生的 PostgREST 查詢路徑（/rest/v1/countries_lpi?...）解析成的查詢計畫
+ *
+ * 只接受 countries_lpi 的已知欄位與 select / 篩選（eq、neq、gt、gte、lt、lte、like、ilike、is.null、in，
+ * 可加 not.）/ order / limit / offset；其他參數、欄位、運算子或可疑字元一律以 IllegalArgumentException 拒絕，
+ * 在送出任何網路請求之前就擋下。
+ *
+ * toPath() 依固定順序重組成標準路徑，可直接送 Supabase，也適合當快取 key；
+ * compile() 把篩選與排序編譯一次（ilike 預先編成 Pattern），之後可在本地資料列上重複執行，
+ * 並套用 PostgREST 做不到的分數清洗（lpi_score 一律以清洗後的數值比較、排序與輸出）。
+ */
+public final class PostgrestQuery {
+
+    public static final String RESOURCE = "/rest/v1/countries_lpi";
+
+    // 欄位順序即 select=* 的輸出順序
+    public static final List<String> COLUMNS = List.of("id", "country", "region", "lpi_score", "year");
+    private static final Set<String> NUMERIC_COLUMNS = Set.of("id", "lpi_score", "year");
+    private static final String SCORE = "lpi_score";
+
+    private static final Set<String> OPERATORS = Set.of("eq", "neq", "gt", "gte", "lt", "lte", "like", "ilike", "is", "in");
+
+    static final int MAX_PATH_LENGTH = 2048;
+    static final int MAX_FILTERS = 20;
+    static final int MAX_ORDERS = 5;
+    static final int MAX_IN_VALUES = 100;
+    static final int MAX_LIMIT = 10_000;
+    static final int MAX_OFFSET = 1_000_000;
+
+    /**
+     * 一個篩選條件，例如 region=not.ilike.*Asia* -> (region, ilike, true, "*Asia*")
+     */
+    public record Filter(String column, String operator, boolean negated, String operand) {}
+
+    /**
+     * 一個排序鍵；nullsFirst 未指定時依 PostgreSQL 預設（desc 時 null 在前）
+     */
+    public record Order(String column, boolean descending, boolean nullsFirst) {}
+
+    private final List<String> select;   // null 表示 select=*（或未指定）
+    private final List<Filter> filters;
+    private final List<Order> orders;
+    private final Integer limit;
+    private final int offset;
+
+    private PostgrestQuery(List<String> select, List<Filter> filters, List<Order> orders, Integer limit, int offset) {
+        this.select = select;
+        this.filters = List.copyOf(filters);
+        this.orders = List.copyOf(orders);
+        this.limit = limit;
+        this.offset = offset;
+    }
+
+    public List<String> select() {
+        return select == null ? COLUMNS : select;
+    }
+
+    public List<Filter> filters() {
+        return filters;
+    }
+
+    public List<Order> orders() {
+        return orders;
+    }
+
+    public Integer limit() {
+        return limit;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * 解析並驗證路徑；不支援或可疑的路徑拋出 IllegalArgumentException（訊息說明原因）
+     */
+    public static PostgrestQuery parse(String apiPath) {
+        if (apiPath == null) throw invalid("路徑為空");
+        String path = apiPath.strip();
+        // LLM 偶爾會把路徑包在反引號裡
+        if (path.length() >= 2 && path.startsWith("`") && path.endsWith("`")) {
+            path = path.substring(1, path.length() - 1).strip();
+        }
+        if (path.length() > MAX_PATH_LENGTH) throw invalid("路徑過長");
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c < 0x20 || c == 0x7f || c == '#' || c == '\\') throw invalid("路徑含有不允許的字元");
+        }
+
+        int q = path.indexOf('?');
+        if (!(q < 0 ? path : path.substring(0, q)).equals(RESOURCE)) throw invalid("只支援 " + RESOURCE);
+
+        List<String> select = null;
+        List<Filter> filters = new ArrayList<>();
+        List<Order> orders = null;
+        Integer limit = null;
+        Integer offset = null;
+        if (q >= 0) {
+            for (String param : path.substring(q + 1).split("&")) {
+                if (param.isEmpty()) continue;
+                int eq = param.indexOf('=');
+                if (eq <= 0) throw invalid("參數格式錯誤：" + param);
+                String key = decode(param.substring(0, eq));
+                String value = decode(param.substring(eq + 1));
+                checkCharacters(value);
+
+                switch (key) {
+                    case "select" -> {
+                        if (select != null) throw invalid("select 重複");
+                        select = parseSelect(value);
+                    }
+                    case "order" -> {
+                        if (orders != null) throw invalid("order 重複");
+                        orders = parseOrder(value);
+                    }
+                    case "limit" -> {
+                        if (limit != null) throw invalid("limit 重複");
+                        limit = parseInt("limit", value, MAX_LIMIT);
+                    }
+                    case "offset" -> {
+                        if (offset != null) throw invalid("offset 重複");
+                        offset = parseInt("offset", value, MAX_OFFSET);
+                    }
+                    default -> {
+                        if (filters.size() >= MAX_FILTERS) throw invalid("篩選條件過多");
+                        filters.add(parseFilter(key, value));
+                    }
+                }
+            }
+        }
+        return new PostgrestQuery(select != null && select.equals(COLUMNS) ? null : select, filters,
+                orders == null ? List.of() : orders, limit, offset == null ? 0 : offset);
+    }
+
+    /**
+     * 分頁讀取：從第 from 列（相對於原本的 offset）起最多 size 列，超過原本的 limit 時回傳 empty
+     *
+     * 排序最後補上 id.asc，同值的列在各頁之間順序固定，不會重複或遺漏
+     */
+    public Optional<PostgrestQuery> page(int from, int size) {
+        int rows = limit == null ? size : Math.min(size, limit - from);
+        if (rows <= 0) return Optional.empty();
+        List<Order> paged = new ArrayList<>(orders);
+        if (paged.stream().noneMatch(o -> o.column().equals("id"))) paged.add(new Order("id", false, false));
+        return Optional.of(new PostgrestQuery(select, filters, paged, rows, offset + from));
+    }
+
+    /**
+     * 標準路徑：select、篩選（依原順序）、order、limit、offset，值不做百分比編碼（交給 URI 樣板編碼）
+     */
+    public String toPath() {
+        StringBuilder path = new StringBuilder(RESOURCE).append("?select=").append(select == null ? "*" : String.join(",", select));
+        for (Filter f : filters) {
+            path.append('&').append(f.column()).append('=')
+                    .append(f.negated() ? "not." : "").append(f.operator()).append('.').append(f.operand());
+        }
+        if (!orders.isEmpty()) {
+            StringJoiner order = new StringJoiner(",");
+            for (Order o : orders) {
+                boolean defaultNulls = o.nullsFirst() == o.descending();
+                order.add(o.column() + (o.descending() ? ".desc" : ".asc")
+                        + (defaultNulls ? "" : o.nullsFirst() ? ".nullsfirst" : ".nullslast"));
+            }
+            path.append("&order=").append(order);
+        }
+        if (limit != null) path.append("&limit=").append(limit);
+        if (offset > 0) path.append("&offset=").append(offset);
+        return path.toString();
+    }
+
+    /**
+     * select / 篩選 / 排序用到的欄位都在 available 裡（select=* 只輸出資料列實際有的欄位）
+     */
+    public boolean usesOnly(Collection<String> available) {
+        Set<String> used = new HashSet<>();
+        if (select != null) used.addAll(select);
+        filters.forEach(f -> used.add(f.column()));
+        orders.forEach(o -> used.add(o.column()));
+        return available.containsAll(used);
+    }
+
+    /**
+     * 分數為 null 或無法解析的列一定不會出現在結果裡：至少有一個 lpi_score 篩選在 null 時不成立
+     * （is.null 以外的運算子，加不加 not. 都是；或 not.is.null）。排序不會排除任何列，不算。
+     *
+     * 只保留有效分數的資料（例如常駐快照）只能回答這類查詢，其他查詢要交給 Supabase。
+     */
+    public boolean excludesNullScores() {
+        for (Filter f : filters) {
+            if (f.column().equals(SCORE) && (!f.operator().equals("is") || f.negated())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 編譯成可在本地資料列上執行的查詢
+     *
+     * @param scoreParser 分數清洗（ScoreParserService::parseScore），無法解析回傳 NaN，視同 null
+     */
+    public Compiled compile(ToDoubleFunction<Object> scoreParser) {
+        return new Compiled(this, scoreParser);
+    }
+
+    /**
+     * 編譯後的查詢：每列只跑預先組好的 Predicate，不再解析字串
+     */
+    public static final class Compiled {
+
+        private final PostgrestQuery query;
+        private final ToDoubleFunction<Object> scoreParser;
+        private final Predicate<Map<String, Object>> predicate;
+        private final Comparator<Map<String, Object>> comparator;
+
+        private Compiled(PostgrestQuery query, ToDoubleFunction<Object> scoreParser) {
+            this.query = query;
+            this.scoreParser = scoreParser;
+
+            Predicate<Map<String, Object>> all = row -> true;
+            for (Filter filter : query.filters) {
+                all = all.and(compileFilter(filter));
+            }
+            this.predicate = all;
+
+            Comparator<Map<String, Object>> chain = null;
+            for (Order order : query.orders) {
+                Comparator<Map<String, Object>> next = compileOrder(order);
+                chain = chain == null ? next : chain.thenComparing(next);
+            }
+            this.comparator = chain;
+        }
+
+        /**
+         * 篩選、排序（穩定排序，同值維持原順序）、offset / limit，最後投影成 select 的欄位
+         */
+        public List<Map<String, Object>> evaluate(List<Map<String, Object>> rows) {
+            int wanted = comparator == null && query.limit != null ? query.offset + query.limit : Integer.MAX_VALUE;
+            List<Map<String, Object>> matched = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                if (!predicate.test(row)) continue;
+                matched.add(row);
+                if (matched.size() >= wanted) break;   // 不排序時收夠就停
+            }
+            if (comparator != null) matched.sort(comparator);
+
+            int from = Math.min(query.offset, matched.size());
+            int to = query.limit == null ? matched.size() : Math.min(matched.size(), from + query.limit);
+            List<Map<String, Object>> result = new ArrayList<>(to - from);
+            for (Map<String, Object> row : matched.subList(from, to)) {
+                result.add(project(row));
+            }
+            return result;
+        }
+
+        private Map<String, Object> project(Map<String, Object> row) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            for (String column : query.select()) {
+                if (query.select == null && !row.containsKey(column)) continue;
+                if (column.equals(SCORE)) {
+                    double score = scoreParser.applyAsDouble(row.get(SCORE));
+                    out.put(SCORE, Double.isNaN(score) ? null : score);
+                } else {
+                    out.put(column, row.get(column));
+                }
+            }
+            return out;
+        }
+
+        private Predicate<Map<String, Object>> compileFilter(Filter f) {
+            boolean negated = f.negated();
+            if (f.operator().equals("is")) {
+                // is.null：只看是否為 null
+                return NUMERIC_COLUMNS.contains(f.column())
+                        ? row -> Double.isNaN(number(row, f.column())) != negated
+                        : row -> (row.get(f.column()) == null) != negated;
+            }
+
+            // 其他運算子遇到 null 一律不成立（SQL 的 NULL 語意，加 not. 也一樣）
+            if (NUMERIC_COLUMNS.contains(f.column())) {
+                NumberTest test = numberTest(f);
+                return row -> {
+                    double v = number(row, f.column());
+                    return !Double.isNaN(v) && test.test(v) != negated;
+                };
+            }
+            Predicate<String> test = textTest(f);
+            return row -> {
+                Object v = row.get(f.column());
+                return v != null && test.test(v.toString()) != negated;
+            };
+        }
+
+        private Comparator<Map<String, Object>> compileOrder(Order o) {
+            Function<Map<String, Object>, Comparable<?>> key = NUMERIC_COLUMNS.contains(o.column())
+                    ? row -> {
+                        double v = number(row, o.column());
+                        return Double.isNaN(v) ? null : v;
+                    }
+                    : row -> {
+                        Object v = row.get(o.column());
+                        return v == null ? null : v.toString();
+                    };
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Comparator<Comparable> natural = o.descending() ? Comparator.reverseOrder() : Comparator.naturalOrder();
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Comparator<Comparable> withNulls = o.nullsFirst() ? Comparator.nullsFirst(natural) : Comparator.nullsLast(natural);
+            return (a, b) -> withNulls.compare(key.apply(a), key.apply(b));
+        }
+
+        /**
+         * 數值欄位：lpi_score 走分數清洗，其他（id、year）接受數字或數字字串；null / 無法解析為 NaN
+         */
+        private double number(Map<String, Object> row, String column) {
+            Object raw = row.get(column);
+            if (column.equals(SCORE)) return scoreParser.applyAsDouble(raw);
+            if (raw == null) return Double.NaN;
+            if (raw instanceof Number n) return n.doubleValue();
+            try {
+                return Double.parseDouble(raw.toString().trim());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface NumberTest {
+        boolean test(double value);
+    }
+
+    private static NumberTest numberTest(Filter f) {
+        if (f.operator().equals("in")) {
+            double[] values = parseList(f.operand()).stream().mapToDouble(PostgrestQuery::toNumber).sorted().toArray();
+            return v -> Arrays.binarySearch(values, v) >= 0;
+        }
+        double operand = toNumber(f.operand());
+        return switch (f.operator()) {
+            case "eq" -> v -> v == operand;
+            case "neq" -> v -> v != operand;
+            case "gt" -> v -> v > operand;
+            case "gte" -> v -> v >= operand;
+            case "lt" -> v -> v < operand;
+            case "lte" -> v -> v <= operand;
+            default -> throw invalid(f.operator() + " 不能用在數值欄位 " + f.column());
+        };
+    }
+
+    private static Predicate<String> textTest(Filter f) {
+        String operand = f.operand();
+        return switch (f.operator()) {
+            case "eq" -> operand::equals;
+            case "neq" -> v -> !v.equals(operand);
+            case "gt" -> v -> v.compareTo(operand) > 0;
+            case "gte" -> v -> v.compareTo(operand) >= 0;
+            case "lt" -> v -> v.compareTo(operand) < 0;
+            case "lte" -> v -> v.compareTo(operand) <= 0;
+            case "like" -> likePattern(operand, 0).asMatchPredicate();
+            case "ilike" -> likePattern(operand, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE).asMatchPredicate();
+            case "in" -> Set.copyOf(parseList(operand))::contains;
+            default -> throw invalid("不支援的運算子 " + f.operator());
+        };
+    }
+
+    /**
+     * PostgREST 的 like 樣式：* 為任意字串，_ 為任意單一字元，其他字元照字面比對
+     */
+    static Pattern likePattern(String like, int flags) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '*' || c == '_') {
+                if (!literal.isEmpty()) regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (!literal.isEmpty()) regex.append(Pattern.quote(literal.toString()));
+        return Pattern.compile(regex.toString(), flags | Pattern.DOTALL);
+    }
+
+    // --- 解析 ---
+
+    private static List<String> parseSelect(String value) {
+        if (value.strip().equals("*")) return COLUMNS;
+        Set<String> columns = new LinkedHashSet<>();
+        for (String part : value.split(",")) {
+            columns.add(column(part.strip()));
+        }
+        return List.copyOf(columns);
+    }
+
+    private static List<Order> parseOrder(String value) {
+        List<Order> orders = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (orders.size() >= MAX_ORDERS) throw invalid("排序欄位過多");
+            String[] tokens = part.strip().split("\\.");
+            String column = column(tokens[0]);
+            boolean descending = false;
+            Boolean nullsFirst = null;
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "asc" -> descending = false;
+                    case "desc" -> descending = true;
+                    case "nullsfirst" -> nullsFirst = true;
+                    case "nullslast" -> nullsFirst = false;
+                    default -> throw invalid("不支援的排序方式：" + part);
+                }
+            }
+            orders.add(new Order(column, descending, nullsFirst == null ? descending : nullsFirst));
+        }
+        return orders;
+    }
+
+    private static Filter parseFilter(String key, String value) {
+        String column = column(key);
+        boolean negated = value.startsWith("not.");
+        String rest = negated ? value.substring(4) : value;
+        int dot = rest.indexOf('.');
+        if (dot <= 0) throw invalid("篩選條件格式錯誤：" + key + "=" + value);
+
+        String operator = rest.substring(0, dot);
+        String operand = rest.substring(dot + 1);
+        if (!OPERATORS.contains(operator)) throw invalid("不支援的運算子 " + operator);
+
+        boolean numeric = NUMERIC_COLUMNS.contains(column);
+        switch (operator) {
+            case "is" -> {
+                if (!operand.equalsIgnoreCase("null")) throw invalid("is 只支援 null");
+                operand = "null";
+            }
+            case "in" -> {
+                List<String> values = parseList(operand);
+                if (numeric) values.forEach(PostgrestQuery::toNumber);
+            }
+            case "like", "ilike" -> {
+                if (numeric) throw invalid(operator + " 不能用在數值欄位 " + column);
+                if (operand.length() > 100) throw invalid("比對樣式過長");
+            }
+            default -> {
+                if (numeric) toNumber(operand);
+            }
+        }
+        return new Filter(column, operator, negated, operand);
+    }
+
+    /**
+     * in.(a,b,"c,d")：逗號分隔，雙引號內的逗號不分割
+     */
+    private static List<String> parseList(String operand) {
+        if (!operand.startsWith("(") || !operand.endsWith(")")) throw invalid("in 的值必須是 (a,b,...)");
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 1; i < operand.length() - 1; i++) {
+            char c = operand.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                values.add(current.toString().strip());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) throw invalid("in 的引號未閉合");
+        values.add(current.toString().strip());
+        if (values.size() > MAX_IN_VALUES) throw invalid("in 的值過多");
+        return values;
+    }
+
+    private static String column(String name) {
+        if (!COLUMNS.contains(name)) throw invalid("不支援的欄位：" + name);
+        return name;
+    }
+
+    private static double toNumber(String value) {
+        try {
+            double v = Double.parseDouble(value.strip());
+            if (Double.isFinite(v)) return v;
+        } catch (NumberFormatException e) {
+            // 落到下方統一拋出
+        }
+        throw invalid("不是數值：" + value);
+    }
+
+    private static int parseInt(String name, String value, int max) {
+        try {
+            int n = Integer.parseInt(value.strip());
+            if (n >= 0 && n <= max) return n;
+        } catch (NumberFormatException e) {
+            // 落到下方統一拋出
+        }
+        throw invalid(name + " 必須是 0 到 " + max + " 的整數");
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalid("百分比編碼錯誤");
+        }
+    }
+
+    /**
+     * 解碼後的值只允許文字、數字、空白與 PostgREST 語法用到的少數符號，
+     * 擋下 & = ? % # 等會改變路徑結構或重新編碼後變義的字元
+     */
+    private static void checkCharacters(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == ' ' || ".*,()_-'\"".indexOf(c) >= 0) continue;
+            throw invalid("值含有不允許的字元：" + c);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String reason) {
+        return new IllegalArgumentException("不支援的查詢路徑：" + reason);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PostgrestQuery other && toPath().equals(other.toPath());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(toPath());
+    }
+
+    @Override
+    public String toString() {
+        return toPath();
+    }
+}
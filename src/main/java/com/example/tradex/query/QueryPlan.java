@@ -0,0 +1,52 @@
+package com.example.tradex.query;
+
+/**
+ * 問題解析後的查詢計畫（與問句的寫法無關，相同語意的問題會得到相同的計畫）
+ *
+ * @param intent   問題類型
+ * @param limit    前 N 名的 N，0 表示不限制
+ * @param minScore 分數下限（不含），null 表示不限
+ * @param maxScore 分數上限（不含），null 表示不限
+ * @param region   區域關鍵字（不分大小寫的「包含」比對），null 表示不限
+ * @param year     年份，null 表示不限
+ */
+public record QueryPlan(Intent intent, int limit, Double minScore, Double maxScore, String region, Integer year) {
+
+    public enum Intent {
+        AVERAGE_BY_REGION,
+        TOP_N,
+        SCORE_ABOVE,
+        SCORE_BELOW
+    }
+
+    public static QueryPlan averageByRegion() {
+        return new QueryPlan(Intent.AVERAGE_BY_REGION, 0, null, null, null, null);
+    }
+
+    public static QueryPlan topN(int limit) {
+        return new QueryPlan(Intent.TOP_N, limit, null, null, null, null);
+    }
+
+    public static QueryPlan above(double threshold, String region) {
+        return new QueryPlan(Intent.SCORE_ABOVE, 0, threshold, null, region, null);
+    }
+
+    /**
+     * 正規化的文字表示，作為結果快取與 ETag 的 key
+     */
+    public String canonicalKey() {
+        return intent + "|" + limit + "|" + minScore + "|" + maxScore + "|"
+                + (region == null ? null : region.toLowerCase()) + "|" + year;
+    }
+
+    public boolean isAverage() {
+        return intent == Intent.AVERAGE_BY_REGION;
+    }
+
+    /**
+     * 分數條件（不看區域 / 年份），讀取資料時可先用來丟掉不需要的列
+     */
+    public boolean acceptsScore(double score) {
+        return (minScore == null || score > minScore) && (maxScore == null || score < maxScore);
+    }
+}
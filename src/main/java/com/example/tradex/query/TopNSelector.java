@@ -0,0 +1,77 @@
+package com.example.tradex.query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 串流式前 N 名選擇器
+ *
+ * 用大小為 N 的 min-heap 保留目前最好的 N 筆，另外記住與第 N 名同分、
+ * 但被擠出 heap 的項目，最後一併回傳（與原本「同分並列」的行為一致）。
+ * 時間 O(items · log N)，記憶體 O(N + 同分數量)，不需要先排序全部資料。
+ *
+ * 輸出依分數由高到低，同分依 tieBreak 由小到大，順序固定。
+ * limit <= 0 表示不限制，全部排序後回傳。
+ * heap 依實際放入的筆數成長，limit 很大時也不會先配置 limit 大小的陣列。
+ */
+public class TopNSelector<T> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int limit;
+    private final ToDoubleFunction<T> score;
+    private final Comparator<T> rankOrder;   // 名次在前的排前面
+    private final PriorityQueue<T> heap;     // 名次最差的在 heap 頂端
+    private final List<T> ties = new ArrayList<>();
+    private final List<T> unbounded;
+
+    public TopNSelector(int limit, ToDoubleFunction<T> score, Comparator<T> tieBreak) {
+        this.limit = limit;
+        this.score = score;
+        this.rankOrder = Comparator.<T>comparingDouble(score).reversed().thenComparing(tieBreak);
+        this.heap = limit > 0 ? new PriorityQueue<>(Math.min(limit, INITIAL_CAPACITY), rankOrder.reversed()) : null;
+        this.unbounded = limit > 0 ? null : new ArrayList<>();
+    }
+
+    public void offer(T item) {
+        if (unbounded != null) {
+            unbounded.add(item);
+            return;
+        }
+        if (heap.size() < limit) {
+            heap.add(item);
+            return;
+        }
+
+        double s = score.applyAsDouble(item);
+        double min = score.applyAsDouble(heap.peek());
+        if (s > min) {
+            T evicted = heap.poll();
+            heap.add(item);
+            // 被擠掉的如果和新的第 N 名同分，就是並列；否則舊的並列者全部出局
+            if (score.applyAsDouble(evicted) == score.applyAsDouble(heap.peek())) {
+                ties.add(evicted);
+            } else {
+                ties.clear();
+            }
+        } else if (s == min) {
+            ties.add(item);
+        }
+    }
+
+    public List<T> result() {
+        List<T> result;
+        if (unbounded != null) {
+            result = unbounded;
+        } else {
+            result = new ArrayList<>(heap.size() + ties.size());
+            result.addAll(heap);
+            result.addAll(ties);
+        }
+        result.sort(rankOrder);
+        return result;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.tradex.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 單一上游的自適應併發上限
+ *
+ * 1. 同時送出的請求數不超過 limit，超過的在 FIFO 佇列等待，最多等 queueTimeout；佇列滿或等到逾時就快速失敗
+ * 2. limit 依觀察到的延遲調整（AIMD）：延遲在基準的 tolerance 倍以內且併發確實用到上限的一半以上時慢慢加大
+ *    （每個 limit 份請求約 +1），延遲明顯變長時小幅縮小，上游回 429 / 5xx / 逾時則大幅縮小
+ * 3. 基準延遲是觀察到的最小延遲，緩慢往上漂移，上游長期變慢時不會永遠被舊的最小值卡住
+ *
+ * 延遲以「送出到收到回應標頭」計算（串流時不含客戶端讀取的時間），名額則佔到請求完全結束。
+ */
+public class AdaptiveLimiter {
+
+    static final double BACKOFF_ON_DROP = 0.5;
+    static final double BACKOFF_ON_LATENCY = 0.9;
+    static final double BASELINE_DRIFT = 0.01;
+    static final long MIN_DROP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueSize;
+    private final long queueTimeoutNanos;
+    private final double tolerance;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double baselineNanos = Double.NaN;
+    private long lastDropNanos;
+    private boolean droppedBefore;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                           int queueSize, long queueTimeoutMs, double tolerance) {
+        this(name, initialLimit, minLimit, maxLimit, queueSize, queueTimeoutMs, tolerance, System::nanoTime);
+    }
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                           int queueSize, long queueTimeoutMs, double tolerance, LongSupplier nanoClock) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.queueSize = queueSize;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.tolerance = tolerance;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * 取得一個名額：有空位立刻回傳，否則排隊等到有名額或逾時
+     *
+     * @throws UpstreamOverloadedException 佇列已滿、等到逾時或等待中被中斷
+     */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) return admit();
+            if (queued >= queueSize) throw reject("排隊已滿");
+
+            queued++;
+            try {
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) throw reject("排隊逾時");
+                    remaining = released.awaitNanos(remaining);
+                }
+                return admit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("等待中被中斷");
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit admit() {
+        inFlight++;
+        admitted.incrementAndGet();
+        return new Permit(nanoClock.getAsLong(), inFlight);
+    }
+
+    private UpstreamOverloadedException reject(String reason) {
+        rejected.incrementAndGet();
+        return new UpstreamOverloadedException(name, reason, 1);
+    }
+
+    private void release(long latencyNanos, int inFlightAtStart, boolean drop) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (drop) {
+                dropped.incrementAndGet();
+                // 同一波失敗（彼此間隔小於基準延遲）只減半一次，避免一次掉到下限
+                long now = nanoClock.getAsLong();
+                long window = Math.max(MIN_DROP_INTERVAL_NANOS, Double.isNaN(baselineNanos) ? 0 : (long) baselineNanos);
+                if (!droppedBefore || now - lastDropNanos >= window) {
+                    limit = Math.max(minLimit, limit * BACKOFF_ON_DROP);
+                    lastDropNanos = now;
+                    droppedBefore = true;
+                }
+            } else if (latencyNanos >= 0) {
+                if (Double.isNaN(baselineNanos) || latencyNanos < baselineNanos) {
+                    baselineNanos = latencyNanos;
+                } else {
+                    baselineNanos += (latencyNanos - baselineNanos) * BASELINE_DRIFT;
+                }
+
+                if (latencyNanos > baselineNanos * tolerance) {
+                    limit = Math.max(minLimit, limit * BACKOFF_ON_LATENCY);
+                } else if (inFlightAtStart * 2 >= (int) limit) {
+                    // 只有真的用到上限時才加大，閒置時 limit 不會無限制成長
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Number> stats() {
+        lock.lock();
+        try {
+            Map<String, Number> stats = new LinkedHashMap<>();
+            stats.put("limit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("queued", queued);
+            stats.put("admitted", admitted.get());
+            stats.put("rejected", rejected.get());
+            stats.put("dropped", dropped.get());
+            stats.put("baselineMs", Double.isNaN(baselineNanos) ? 0 : Math.round(baselineNanos / 1e5) / 10.0);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 一個已取得的名額；收到回應時呼叫 responded() 記下延遲，結束時 close() 歸還
+     */
+    public final class Permit implements AutoCloseable {
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private long latencyNanos = -1;
+        private boolean drop;
+        private boolean ignore;
+        private boolean closed;
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * 收到回應標頭：延遲取到這裡為止，之後讀取 body 的時間不算
+         */
+        public void responded() {
+            if (latencyNanos < 0) latencyNanos = nanoClock.getAsLong() - startNanos;
+        }
+
+        /**
+         * 上游過載的訊號（429 / 5xx / 逾時），歸還時大幅縮小 limit
+         */
+        public void dropped() {
+            drop = true;
+        }
+
+        /**
+         * 與上游負載無關的失敗（例如 400），歸還時不調整 limit
+         */
+        public void ignored() {
+            ignore = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            long latency = ignore ? -1 : latencyNanos >= 0 ? latencyNanos : nanoClock.getAsLong() - startNanos;
+            release(latency, inFlightAtStart, drop);
+        }
+    }
+}
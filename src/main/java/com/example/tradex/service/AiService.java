@@ -1,9 +1,11 @@
 package com.example.tradex.service;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -13,14 +15,59 @@ import org.springframework.web.client.RestTemplate;
 
 @Service
 public class AiService {
+
+    public static final String OUT_OF_SCOPE_MESSAGE = "我目前只能處理 LPI 物流數據相關的問題，請試著問我關於國家分數或區域平均！";
+    public static final String UNSUPPORTED_QUERY_MESSAGE = "這個問題目前無法轉成可執行的查詢，請換個問法，例如：『亞洲 LPI 高於 3 的國家』。";
     
     @Value("${openrouter.api.key}")
     private String apiKey;
-    private final String API_URL = "https://openrouter.ai/api/v1/chat/completions";
+    // 可改指向相容的端點（例如壓測用的本機替身）
+    @Value("${openrouter.api-url:https://openrouter.ai/api/v1/chat/completions}")
+    private String apiUrl;
+
+    private final RestTemplate restTemplate;
+    private final OutboundGateway gateway;
+    private final TranslationCache translationCache;
 
+    public AiService(@Qualifier("openRouterRestTemplate") RestTemplate restTemplate,
+                     OutboundGateway gateway,
+                     @Value("${openrouter.cache.max-size:500}") int cacheMaxSize,
+                     @Value("${openrouter.cache.ttl-minutes:60}") long cacheTtlMinutes) {
+        this.restTemplate = restTemplate;
+        this.gateway = gateway;
+        this.translationCache = new TranslationCache(cacheMaxSize, Duration.ofMinutes(cacheTtlMinutes));
+    }
+
+    /**
+     * 問題轉 Supabase 路徑：先查快取，相同問題同時只會送出一次 LLM 請求
+     *
+     * @throws UpstreamOverloadedException OpenRouter 併發已滿，交給呼叫端回覆「忙碌中」
+     */
     public String translateToSupabasePath(String userQuestion) {
-        RestTemplate restTemplate = new RestTemplate();
+        try {
+            return translationCache.get(userQuestion, this::requestTranslation);
+        } catch (UpstreamOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            return "Error: " + e.getMessage();
+        }
+    }
 
+    /**
+     * 翻譯結果是否為可執行的 countries_lpi 查詢（錯誤訊息或與業務無關的回覆都不算）
+     */
+    public static boolean isLpiPath(String apiPath) {
+        return apiPath != null && apiPath.contains("countries_lpi");
+    }
+
+    public Map<String, Long> getTranslationCacheStats() {
+        return translationCache.stats();
+    }
+
+    /**
+     * 實際呼叫 OpenRouter，失敗直接拋出例外（不會被快取）
+     */
+    private String requestTranslation(String userQuestion) {
         // 1. 設定 Headers
         HttpHeaders headers= new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -48,16 +95,13 @@ public class AiService {
         ));
 
         // 4. 發送請求
-        try {
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            Map<String, Object> response = restTemplate.postForObject(API_URL, entity, Map.class);
-            
-            // 解析 AI 回傳的 SQL (這部分根據 API 結構抓取 content)
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
-            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-            return message.get("content").toString().trim();
-        } catch (Exception e) {
-            return "Error: " + e.getMessage();
-        }
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+        Map<String, Object> response = gateway.call(OutboundGateway.Upstream.OPENROUTER,
+                permit -> restTemplate.postForObject(apiUrl, entity, Map.class));
+
+        // 解析 AI 回傳的 SQL (這部分根據 API 結構抓取 content)
+        List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
+        Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
+        return message.get("content").toString().trim();
     }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.example.tradex.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.tradex.query.IntentRouter;
+import com.example.tradex.query.PostgrestQuery;
+import com.example.tradex.query.QueryPlan;
+
+/**
+ * 批次問答：多個問題共用翻譯、上游讀取與計算
+ *
+ * 1. 規則路由得到的計畫去重後交給查詢後端一次執行（快照上一次掃完）
+ * 2. 其餘問題依正規化後的問句去重，在虛擬執行緒上同時翻譯，翻譯完立刻讀取
+ * 3. 翻譯結果先以 PostgrestQuery 驗證並轉成標準路徑，相同的查詢只執行一次（本地或 Supabase），所有對應的問題共用
+ *
+ * 每個問題各自回傳結果或錯誤，某個路徑失敗不影響其他問題。
+ */
+@Service
+public class AskBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(AskBatchService.class);
+
+    static final String FAILURE_MESSAGE = "數據解析發生異常，請稍後再試。";
+
+    private static final Map<String, Object> OUT_OF_SCOPE = Map.of("type", "text", "content", AiService.OUT_OF_SCOPE_MESSAGE);
+    private static final Map<String, Object> UNSUPPORTED = Map.of("type", "text", "content", AiService.UNSUPPORTED_QUERY_MESSAGE);
+
+    @Autowired
+    private IntentRouter intentRouter;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private SupabaseClient supabaseClient;
+
+    @Autowired
+    private LpiQueryBackend lpiQueryBackend;
+
+    @Autowired
+    private AskMetrics askMetrics;
+
+    /**
+     * @return 與 questions 同順序，每項為 {question, result} 或 {question, error}
+     */
+    public List<Map<String, Object>> askAll(List<String> questions) {
+        int n = questions.size();
+        Object[] results = new Object[n];
+        String[] errors = new String[n];
+
+        // --- 1. 規則路由，相同計畫只算一次 ---
+        Map<String, QueryPlan> plans = new LinkedHashMap<>();
+        Map<String, List<Integer>> planTargets = new LinkedHashMap<>();
+        Map<String, String> unrouted = new LinkedHashMap<>();          // 正規化問句 -> 原始問句
+        Map<String, List<Integer>> questionTargets = new LinkedHashMap<>();
+        askMetrics.time(AskMetrics.Stage.ROUTE, () -> {
+            for (int i = 0; i < n; i++) {
+                String question = questions.get(i);
+                QueryPlan plan = intentRouter.route(question).orElse(null);
+                if (plan != null) {
+                    plans.putIfAbsent(plan.canonicalKey(), plan);
+                    planTargets.computeIfAbsent(plan.canonicalKey(), k -> new ArrayList<>()).add(i);
+                } else {
+                    String key = TranslationCache.normalize(question);
+                    unrouted.putIfAbsent(key, question);
+                    questionTargets.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+                }
+            }
+            return null;
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // --- 2. 其他問題同時翻譯，翻譯完立刻讀取；相同路徑共用同一個讀取 ---
+            Map<String, CompletableFuture<Object>> fetches = new ConcurrentHashMap<>();
+            Map<String, CompletableFuture<Object>> pending = new LinkedHashMap<>();
+            unrouted.forEach((key, question) -> pending.put(key, CompletableFuture
+                    .supplyAsync(() -> aiService.translateToSupabasePath(question), executor)
+                    .thenCompose(apiPath -> {
+                        if (!AiService.isLpiPath(apiPath)) return CompletableFuture.completedFuture(OUT_OF_SCOPE);
+                        PostgrestQuery query;
+                        try {
+                            query = PostgrestQuery.parse(apiPath);
+                        } catch (IllegalArgumentException e) {
+                            log.warn("拒絕 LLM 查詢路徑「{}」: {}", apiPath, e.getMessage());
+                            return CompletableFuture.completedFuture(UNSUPPORTED);
+                        }
+                        return fetches.computeIfAbsent(query.toPath(),
+                                path -> CompletableFuture.supplyAsync(() -> fetch(query), executor));
+                    })));
+
+            // --- 3. 計畫在等待翻譯的同時於目前執行緒計算 ---
+            if (!plans.isEmpty()) {
+                try {
+                    List<QueryPlan> distinct = new ArrayList<>(plans.values());
+                    List<Object> computed = askMetrics.time(AskMetrics.Stage.AGGREGATE,
+                            () -> lpiQueryBackend.executeAll(distinct));
+                    int p = 0;
+                    for (List<Integer> targets : planTargets.values()) {
+                        Object result = computed.get(p++);
+                        targets.forEach(i -> results[i] = result);
+                    }
+                } catch (Exception e) {
+                    log.warn("批次查詢計畫執行失敗: {}", e.getMessage());
+                    planTargets.values().forEach(targets -> targets.forEach(i -> errors[i] = FAILURE_MESSAGE));
+                }
+            }
+
+            // --- 4. 收齊翻譯 / 讀取結果 ---
+            pending.forEach((key, answer) -> {
+                List<Integer> targets = questionTargets.get(key);
+                try {
+                    Object result = answer.join();
+                    targets.forEach(i -> results[i] = result);
+                } catch (CompletionException e) {
+                    log.warn("批次問題「{}」失敗: {}", unrouted.get(key), e.getCause().getMessage());
+                    String message = e.getCause() instanceof UpstreamOverloadedException
+                            ? UpstreamOverloadedException.USER_MESSAGE : FAILURE_MESSAGE;
+                    targets.forEach(i -> errors[i] = message);
+                }
+            });
+        }
+
+        List<Map<String, Object>> answers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> answer = new LinkedHashMap<>();
+            answer.put("question", questions.get(i));
+            if (errors[i] != null) answer.put("error", errors[i]);
+            else answer.put("result", results[i]);
+            answers.add(answer);
+        }
+        return answers;
+    }
+
+    /**
+     * 本地資料能回答就在本地執行，否則向 Supabase 查詢
+     */
+    private Object fetch(PostgrestQuery query) {
+        Optional<List<Map<String, Object>>> local = lpiQueryBackend.evaluate(query);
+        if (local.isPresent()) return local.get();
+        List<Map<String, Object>> data = supabaseClient.fetchRows(query.toPath());
+        return data == null ? List.of() : data;
+    }
+}
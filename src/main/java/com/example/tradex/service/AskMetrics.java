@@ -0,0 +1,172 @@
+package com.example.tradex.service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * /api/ask 各階段的耗時統計
+ *
+ * 每個階段一個 Micrometer Timer（lpi.ask.stage{stage=...}，含 percentile histogram，
+ * 由 /actuator/prometheus 匯出），同時把耗時記在目前請求上，組成 Server-Timing 標頭。
+ * 背景工作（快照刷新、區域彙總輪詢）包在 refresh 裡，各階段改記到 lpi.refresh{source=...,stage=...}，
+ * 不混進請求的 lpi.ask.stage 百分位數。
+ */
+@Component
+public class AskMetrics {
+
+    public enum Stage {
+        ROUTE,       // 規則路由
+        LLM,         // OpenRouter 翻譯（含翻譯快取）
+        FETCH,       // Supabase 讀取與串流解碼
+        AGGREGATE,   // 查詢後端計算（快照尚未載入時含臨時讀取）
+        SERIALIZE;   // JSON 序列化
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final String REQUEST_ATTRIBUTE = AskMetrics.class.getName() + ".timings";
+
+    // 目前執行緒上進行中的背景工作來源（snapshot / aggregates），null 表示請求路徑
+    private static final ThreadLocal<String> REFRESH_SOURCE = new ThreadLocal<>();
+
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+    private final MeterRegistry registry;
+    private final Map<String, Timer> totals = new ConcurrentHashMap<>();
+
+    public AskMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("lpi.ask.stage")
+                    .description("/api/ask 各階段耗時")
+                    .tag("stage", stage.label())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    /**
+     * 計時執行一個階段；同一個請求內重複的階段會累加
+     */
+    public <T> T time(Stage stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        String source = REFRESH_SOURCE.get();
+        if (source != null) {
+            Timer.builder("lpi.refresh")
+                    .description("背景載入（快照刷新、區域彙總）各階段耗時")
+                    .tag("source", source)
+                    .tag("stage", stage.label())
+                    .register(registry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        timers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+        Map<Stage, Long> timings = requestTimings(true);
+        if (timings != null) timings.merge(stage, nanos, Long::sum);
+    }
+
+    /**
+     * 執行背景載入，期間目前執行緒上記錄的階段都歸到 lpi.refresh，不算請求耗時
+     *
+     * @param source 資料來源（snapshot / aggregates）
+     */
+    public <T> T refresh(String source, Supplier<T> work) {
+        String outer = REFRESH_SOURCE.get();
+        REFRESH_SOURCE.set(source);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) REFRESH_SOURCE.remove();
+            else REFRESH_SOURCE.set(outer);
+        }
+    }
+
+    /**
+     * 讀到的資料列數與分數無法解析的列數
+     *
+     * @param source 資料來源（request / snapshot / aggregates）
+     */
+    public void recordRows(String source, long rows, long parseFailures) {
+        DistributionSummary.builder("lpi.rows.fetched")
+                .description("每次從 Supabase 讀到的資料列數")
+                .tag("source", source)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(rows);
+        Counter.builder("lpi.parse.failures")
+                .description("分數無法解析的資料列數")
+                .tag("source", source)
+                .register(registry)
+                .increment(parseFailures);
+    }
+
+    /**
+     * /api/ask 的 Server-Timing 標頭，同時記錄 lpi.ask{endpoint=ask}
+     */
+    public String serverTiming(long startNanos) {
+        return serverTiming("ask", startNanos);
+    }
+
+    /**
+     * 記錄整體耗時並組成 Server-Timing 標頭，例如 route;dur=0.1, aggregate;dur=2.3, total;dur=2.5
+     *
+     * @param endpoint 整體耗時依端點分開（ask / batch），批次請求不混進單題的 histogram
+     */
+    public String serverTiming(String endpoint, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        totals.computeIfAbsent(endpoint, e -> Timer.builder("lpi.ask")
+                .description("/api/ask 整體耗時")
+                .tag("endpoint", e)
+                .publishPercentileHistogram()
+                .register(registry)).record(elapsed, TimeUnit.NANOSECONDS);
+
+        StringJoiner header = new StringJoiner(", ");
+        Map<Stage, Long> timings = requestTimings(false);
+        if (timings != null) {
+            timings.forEach((stage, nanos) -> header.add(stage.label() + ";dur=" + millis(nanos)));
+        }
+        header.add("total;dur=" + millis(elapsed));
+        return header.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Stage, Long> requestTimings(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return null;
+
+        Map<Stage, Long> timings = (Map<Stage, Long>) attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (timings == null && create) {
+            timings = new LinkedHashMap<>();
+            attributes.setAttribute(REQUEST_ATTRIBUTE, timings, RequestAttributes.SCOPE_REQUEST);
+        }
+        return timings;
+    }
+}
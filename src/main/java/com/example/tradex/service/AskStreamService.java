@@ -0,0 +1,264 @@
+package com.example.tradex.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import com.example.tradex.query.IntentRouter;
+import com.example.tradex.query.PostgrestQuery;
+import com.example.tradex.query.QueryPlan;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * 串流問答：結果逐列寫出，不先組成完整清單
+ *
+ * 事件有 row（一筆資料）、summary（結尾：列數、耗時，區域平均放在 averages）、text、error 四種，
+ * NDJSON 每行一個 {"type": ..., "data": ...}，SSE 則是 event: 類型 / data: 內容。
+ *
+ * 常見問法與本地可回答的查詢先在快照上算完（需要排序），再逐列寫出；
+ * 送 Supabase 的查詢以 lpi.stream.page-rows 分頁讀取：每頁讀完就釋放上游的併發名額與連線，再寫給客戶端，
+ * 記憶體只保留一頁，客戶端讀得慢只會延後下一頁，不會佔住 Supabase 的名額。
+ * 客戶端斷線的 IOException 發生在上游請求之外，不會被當成 Supabase 過載。
+ * 第一筆立刻 flush，之後每 flush-rows 筆 flush 一次；失敗時的 error 事件只寫在兩筆資料之間。
+ */
+@Service
+public class AskStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(AskStreamService.class);
+
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON),
+        SSE(MediaType.TEXT_EVENT_STREAM);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+    }
+
+    @Autowired
+    private IntentRouter intentRouter;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private SupabaseClient supabaseClient;
+
+    @Autowired
+    private LpiQueryBackend lpiQueryBackend;
+
+    @Autowired
+    private AskMetrics askMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${lpi.stream.flush-rows:64}")
+    private int flushRows = 64;
+
+    @Value("${lpi.stream.page-rows:1000}")
+    private int pageRows = 1000;
+
+    /**
+     * 回答問題並把事件寫到 out；客戶端中途斷線時直接結束
+     */
+    public void stream(String question, OutputStream out, Format format) throws IOException {
+        long start = System.nanoTime();
+        try (Events events = new Events(objectMapper.getFactory().createGenerator(out), format, flushRows)) {
+            try {
+                answer(question, events, start);
+            } catch (IOException e) {
+                throw e;
+            } catch (UpstreamOverloadedException e) {
+                log.warn("串流問答上游忙碌: {}", e.getMessage());
+                events.error(UpstreamOverloadedException.USER_MESSAGE);
+            } catch (Exception e) {
+                log.warn("串流問答失敗: {}", e.getMessage());
+                events.error(AskBatchService.FAILURE_MESSAGE);
+            }
+        }
+    }
+
+    private void answer(String question, Events events, long start) throws IOException {
+        // --- 1. 常見問法走查詢後端；國家清單逐列寫出，區域平均放在 summary ---
+        Optional<QueryPlan> plan = askMetrics.time(AskMetrics.Stage.ROUTE, () -> intentRouter.route(question));
+        if (plan.isPresent()) {
+            Object result = askMetrics.time(AskMetrics.Stage.AGGREGATE, () -> lpiQueryBackend.execute(plan.get()));
+            if (result instanceof Map<?, ?> averages) {
+                events.summary(0, start, averages);
+                return;
+            }
+            long rows = 0;
+            for (Object row : (List<?>) result) {
+                events.row(row);
+                rows++;
+            }
+            events.summary(rows, start, null);
+            return;
+        }
+
+        // --- 2. 其他問題由 LLM 決定路徑，驗證後在本地執行，或把 Supabase 回應一邊解析一邊轉寫 ---
+        String apiPath = askMetrics.time(AskMetrics.Stage.LLM, () -> aiService.translateToSupabasePath(question));
+        if (!AiService.isLpiPath(apiPath)) {
+            events.text(AiService.OUT_OF_SCOPE_MESSAGE);
+            return;
+        }
+
+        PostgrestQuery query;
+        try {
+            query = PostgrestQuery.parse(apiPath);
+        } catch (IllegalArgumentException e) {
+            log.warn("拒絕 LLM 查詢路徑「{}」: {}", apiPath, e.getMessage());
+            events.text(AiService.UNSUPPORTED_QUERY_MESSAGE);
+            return;
+        }
+
+        // 本地資料能回答就在本地執行
+        Optional<List<Map<String, Object>>> local = askMetrics.time(AskMetrics.Stage.AGGREGATE,
+                () -> lpiQueryBackend.evaluate(query));
+        if (local.isPresent()) {
+            for (Map<String, Object> row : local.get()) {
+                events.row(row);
+            }
+            events.summary(local.get().size(), start, null);
+            return;
+        }
+
+        int rows = 0;
+        int size = Math.max(1, pageRows);
+        for (Optional<PostgrestQuery> page = query.page(0, size); page.isPresent(); page = query.page(rows, size)) {
+            List<TokenBuffer> buffered = supabaseClient.streamTemplate(page.get().toPath(), this::readPage);
+            for (TokenBuffer row : buffered) {
+                events.row(row);
+            }
+            rows += buffered.size();
+            if (buffered.size() != page.get().limit()) break;
+        }
+        askMetrics.recordRows("request", rows, 0);
+        events.summary(rows, start, null);
+    }
+
+    /**
+     * 把一頁回應讀進記憶體（逐列保留原本的 token），讀完才離開上游請求
+     */
+    private List<TokenBuffer> readPage(InputStream body) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Supabase 回應不是 JSON 陣列");
+            }
+            List<TokenBuffer> rows = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                TokenBuffer row = new TokenBuffer(parser);
+                row.copyCurrentStructure(parser);
+                rows.add(row);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 把事件寫成 NDJSON 或 SSE；row 可以是已解析的物件，或上游一列的 TokenBuffer
+     */
+    static final class Events implements AutoCloseable {
+
+        private final JsonGenerator generator;
+        private final Format format;
+        private final int flushRows;
+        private long unflushed;
+        private boolean first = true;
+        // 事件寫到一半（寫入失敗）時不能再接 error，否則會產生不完整的一行
+        private boolean open;
+
+        Events(JsonGenerator generator, Format format, int flushRows) {
+            this.generator = generator;
+            this.format = format;
+            this.flushRows = Math.max(1, flushRows);
+            generator.setRootValueSeparator(null);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        }
+
+        void row(Object row) throws IOException {
+            begin("row");
+            if (row instanceof TokenBuffer buffer) buffer.serialize(generator);
+            else generator.writeObject(row);
+            end();
+
+            // 第一筆立刻送出，縮短看到第一列的時間；之後分批 flush
+            if (first || ++unflushed >= flushRows) {
+                generator.flush();
+                first = false;
+                unflushed = 0;
+            }
+        }
+
+        void summary(long rows, long startNanos, Map<?, ?> averages) throws IOException {
+            begin("summary");
+            generator.writeStartObject();
+            generator.writeNumberField("rows", rows);
+            generator.writeNumberField("elapsedMs", (System.nanoTime() - startNanos) / 1_000_000);
+            if (averages != null) generator.writeObjectField("averages", averages);
+            generator.writeEndObject();
+            end();
+        }
+
+        void text(String content) throws IOException {
+            begin("text");
+            generator.writeString(content);
+            end();
+        }
+
+        void error(String message) throws IOException {
+            if (open) return;
+            begin("error");
+            generator.writeString(message);
+            end();
+        }
+
+        private void begin(String type) throws IOException {
+            open = true;
+            if (format == Format.SSE) {
+                generator.writeRaw("event: " + type + "\ndata: ");
+            } else {
+                generator.writeStartObject();
+                generator.writeStringField("type", type);
+                generator.writeFieldName("data");
+            }
+        }
+
+        private void end() throws IOException {
+            if (format == Format.SSE) {
+                generator.writeRaw("\n\n");
+            } else {
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+            open = false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
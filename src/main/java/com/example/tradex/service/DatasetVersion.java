@@ -0,0 +1,71 @@
+package com.example.tradex.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * countries_lpi 的資料版本號：任何來源觀察到資料變動就加一
+ *
+ * 快照 / 區域彙總載入時回報該次回應的驗證值（ETag 或內容摘要），
+ * 與上次不同才算變動；結果快取與 /api/ask 的 ETag 都以這個版本號區分新舊。
+ * 超過 lpi.dataset.max-age-ms 沒有任何來源確認過資料（例如 jdbc 後端且快照、彙總都關閉，
+ * 或上游持續失敗）時版本號自動前進，直接查 Supabase 的結果不會永遠沿用舊的。
+ */
+@Component
+public class DatasetVersion {
+
+    private final AtomicLong version = new AtomicLong(1);
+    private final Map<String, String> validators = new ConcurrentHashMap<>();
+    private final long maxAgeNanos;
+    private volatile long confirmedAt = System.nanoTime();
+
+    public DatasetVersion(@Value("${lpi.dataset.max-age-ms:600000}") long maxAgeMs) {
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMs);
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * 回報某個來源最新的驗證值，與上次不同（或第一次回報）時版本號加一
+     */
+    public void observe(String source, String validator) {
+        confirmedAt = System.nanoTime();
+        String previous = validators.put(source, validator);
+        if (!validator.equals(previous)) bump();
+    }
+
+    /**
+     * 來源確認資料沒有變動（304、輪詢沒有新列），目前的版本號仍然有效
+     */
+    public void confirm() {
+        confirmedAt = System.nanoTime();
+    }
+
+    /**
+     * 已確定資料有變動（例如輪詢到新列、手動刷新）
+     */
+    public long bump() {
+        confirmedAt = System.nanoTime();
+        return version.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void expire() {
+        expire(System.nanoTime());
+    }
+
+    /**
+     * 距離上次確認超過 max-age 時版本號加一；max-age <= 0 表示不過期
+     */
+    public void expire(long now) {
+        if (maxAgeNanos > 0 && now - confirmedAt >= maxAgeNanos) bump();
+    }
+}
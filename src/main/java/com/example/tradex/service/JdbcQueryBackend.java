@@ -0,0 +1,138 @@
+package com.example.tradex.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import com.example.tradex.query.QueryPlan;
+
+/**
+ * JDBC 後端：核心查詢直接在資料庫上以 SQL 聚合，只回傳結果列
+ *
+ * 查詢對象是清洗後的物化檢視 countries_lpi_clean（建立方式見 db/lpi-clean-postgres.sql），
+ * 國名去空白轉大寫、區域大寫、文字分數轉數字都在檢視裡完成。
+ * SQL 由固定片段組成、條件值一律走 prepared statement 參數；
+ * 只用標準 SQL 與視窗函數，因此也能在 H2（PostgreSQL 模式）上測試。
+ */
+@Service
+@ConditionalOnProperty(name = "lpi.query.backend", havingValue = "jdbc")
+public class JdbcQueryBackend implements LpiQueryBackend {
+
+    private static final String AVERAGE_SQL = """
+            SELECT region_key, AVG(score) AS avg_score
+            FROM countries_lpi_clean
+            WHERE region_key IS NOT NULL%s
+            GROUP BY region_key
+            ORDER BY region_key
+            """;
+
+    // 每國只留最高分那筆（同分取 id 較小者）
+    private static final String BEST_PER_COUNTRY = """
+            SELECT country, region, score, country_key,
+                   ROW_NUMBER() OVER (PARTITION BY country_key ORDER BY score DESC, id) AS rn
+            FROM countries_lpi_clean
+            WHERE country_key IS NOT NULL%s
+            """;
+
+    // RANK() 讓與第 N 名同分的國家名次相同，一併保留
+    private static final String TOP_N_SQL = """
+            SELECT country, region, score FROM (
+                SELECT country, region, score, country_key, RANK() OVER (ORDER BY score DESC) AS rnk
+                FROM (%s) best WHERE rn = 1
+            ) ranked
+            WHERE rnk <= ?
+            ORDER BY score DESC, country_key
+            """;
+
+    private static final String ALL_RANKED_SQL = """
+            SELECT country, region, score FROM (%s) best
+            WHERE rn = 1
+            ORDER BY score DESC, country_key
+            """;
+
+    private static final RowMapper<Map<String, Object>> COUNTRY_ROW = (rs, rowNum) -> {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("country", rs.getString("country"));
+        result.put("region", rs.getString("region"));
+        result.put("lpi_score", rs.getDouble("score"));
+        return result;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String refreshSql;
+
+    public JdbcQueryBackend(JdbcTemplate jdbcTemplate,
+                            @Value("${lpi.jdbc.refresh-sql:REFRESH MATERIALIZED VIEW countries_lpi_clean}") String refreshSql) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.refreshSql = refreshSql;
+    }
+
+    @Override
+    public Map<String, Double> averageByRegion(QueryPlan plan) {
+        List<Object> params = new ArrayList<>();
+        String sql = AVERAGE_SQL.formatted(conditions(plan, params));
+
+        Map<String, Double> result = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            result.put(rs.getString("region_key"), rs.getDouble("avg_score"));
+        }, params.toArray());
+        return result;
+    }
+
+    @Override
+    public List<Map<String, Object>> countries(QueryPlan plan) {
+        List<Object> params = new ArrayList<>();
+        String best = BEST_PER_COUNTRY.formatted(conditions(plan, params));
+
+        if (plan.limit() <= 0) {
+            return jdbcTemplate.query(ALL_RANKED_SQL.formatted(best), COUNTRY_ROW, params.toArray());
+        }
+        params.add(plan.limit());
+        return jdbcTemplate.query(TOP_N_SQL.formatted(best), COUNTRY_ROW, params.toArray());
+    }
+
+    /**
+     * 資料變動後呼叫，重新計算物化檢視；refresh-sql 設為空字串可停用（例如 H2 測試）
+     */
+    @Override
+    public void refresh() {
+        if (refreshSql != null && !refreshSql.isBlank()) {
+            jdbcTemplate.execute(refreshSql);
+        }
+    }
+
+    /**
+     * 把計畫中的條件轉成 AND 片段，對應的值依序加入 params
+     */
+    private String conditions(QueryPlan plan, List<Object> params) {
+        StringBuilder sql = new StringBuilder();
+        if (plan.minScore() != null) {
+            sql.append(" AND score > ?");
+            params.add(plan.minScore());
+        }
+        if (plan.maxScore() != null) {
+            sql.append(" AND score < ?");
+            params.add(plan.maxScore());
+        }
+        if (plan.region() != null && !plan.region().isBlank()) {
+            sql.append(" AND LOWER(region) LIKE ?");
+            params.add("%" + escapeLike(plan.region().trim().toLowerCase()) + "%");
+        }
+        if (plan.year() != null) {
+            sql.append(" AND year = ?");
+            params.add(plan.year());
+        }
+        return sql.toString();
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.tradex.service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.tradex.model.RegionalAggregates;
+import com.example.tradex.query.QueryPlan;
+
+/**
+ * 以輪詢 countries_lpi 的變更（change feed）維護 RegionalAggregates
+ *
+ * 第一次完整載入後，之後只抓 id 比上次大的新列；設定了 lpi.aggregates.changed-column
+ * （例如 updated_at）時，也一併抓版本比上次新的已修改列。刪除無法從輪詢得知，
+ * 由較長週期的完整重建（resync）補上。
+ *
+ * 尚未載入成功前，輪詢改為重試完整載入；連續失敗時間隔加倍（上限 lpi.aggregates.retry-max-ms），
+ * Supabase 持續失敗時不會每 15 秒就讀一次整張表。
+ */
+@Service
+public class LpiAggregateService {
+
+    private static final Logger log = LoggerFactory.getLogger(LpiAggregateService.class);
+
+    static final String FEED_PATH = "/rest/v1/countries_lpi?select=id,country,region,lpi_score,year";
+
+    @Autowired
+    private SupabaseClient supabaseClient;
+
+    @Autowired
+    private LpiRowDecoder lpiRowDecoder;
+
+    @Autowired
+    private PartitionedFetcher partitionedFetcher;
+
+    @Autowired
+    private DatasetVersion datasetVersion;
+
+    @Autowired
+    private AskMetrics askMetrics;
+
+    @Value("${lpi.aggregates.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lpi.aggregates.changed-column:}")
+    private String changedColumn;
+
+    @Value("${lpi.aggregates.poll-interval-ms:15000}")
+    private long pollIntervalMs;
+
+    @Value("${lpi.aggregates.retry-max-ms:600000}")
+    private long retryMaxMs;
+
+    private volatile RegionalAggregates aggregates;
+    private long lastId = -1;
+    private String lastVersion;
+
+    // 初次載入連續失敗的次數，與下次可以重試的時間（System.nanoTime）
+    private int loadFailures;
+    private long retryAt;
+
+    /**
+     * 輪詢新增 / 修改的列；尚未完整載入過就先做一次 resync（失敗時退避）
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${lpi.aggregates.poll-interval-ms:15000}")
+    public synchronized void poll() {
+        if (!enabled) return;
+        if (aggregates == null) {
+            initialLoad();
+            return;
+        }
+
+        try {
+            Cursor cursor = new Cursor(lastId, lastVersion);
+            List<RegionalAggregates.Update> updates = new ArrayList<>();
+            LpiRowDecoder.Result result = askMetrics.refresh("aggregates", () -> supabaseClient.stream(changesPath(),
+                    body -> lpiRowDecoder.decodeFeed(body, versionColumn(), collect(updates, cursor))));
+            askMetrics.recordRows("aggregates", result.rows(), result.parseFailures());
+            if (!updates.isEmpty()) {
+                aggregates.apply(updates);
+                lastId = cursor.id;
+                lastVersion = cursor.version;
+                datasetVersion.bump();
+                log.info("LPI 區域彙總已套用 {} 筆變更", updates.size());
+            } else {
+                datasetVersion.confirm();
+            }
+        } catch (Exception e) {
+            log.warn("LPI 區域彙總輪詢失敗: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 完整重建：處理輪詢看不到的刪除，並重設游標；整張表未變更（304）時略過
+     */
+    @Scheduled(initialDelayString = "${lpi.aggregates.resync-interval-ms:3600000}",
+            fixedDelayString = "${lpi.aggregates.resync-interval-ms:3600000}")
+    public synchronized void resync() {
+        if (!enabled) return;
+
+        try {
+            Cursor cursor = new Cursor(-1, null);
+            List<RegionalAggregates.Update> rows = new ArrayList<>();
+            Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> fetched = askMetrics.refresh("aggregates",
+                    () -> partitionedFetcher.feedIfModified(
+                            FEED_PATH + versionSelect() + "&order=id.asc", versionColumn(), collect(rows, cursor)));
+            if (fetched.isEmpty() && aggregates != null) {
+                datasetVersion.confirm();
+                log.debug("LPI 資料未變更（304），略過區域彙總重建");
+                return;
+            }
+            if (fetched.isEmpty()) {
+                throw new IllegalStateException("尚無區域彙總卻收到 304");
+            }
+
+            RegionalAggregates rebuilt = new RegionalAggregates();
+            rebuilt.apply(rows);
+            aggregates = rebuilt;
+            lastId = cursor.id;
+            lastVersion = cursor.version;
+            datasetVersion.observe("aggregates", fetched.get().validator());
+            askMetrics.recordRows("aggregates", fetched.get().value().rows(), fetched.get().value().parseFailures());
+            log.info("LPI 區域彙總已重建：{} 筆有效資料", rebuilt.size());
+        } catch (Exception e) {
+            log.warn("LPI 區域彙總重建失敗，沿用舊資料: {}", e.getMessage());
+        }
+    }
+
+    private void initialLoad() {
+        long now = System.nanoTime();
+        if (loadFailures > 0 && now - retryAt < 0) return;
+
+        resync();
+        if (aggregates != null) {
+            loadFailures = 0;
+            return;
+        }
+        loadFailures++;
+        long delayMs = Math.min(retryMaxMs, pollIntervalMs << Math.min(loadFailures, 20));
+        retryAt = now + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        log.info("LPI 區域彙總尚未載入（連續失敗 {} 次），{} ms 後重試", loadFailures, delayMs);
+    }
+
+    public Optional<RegionalAggregates> current() {
+        return Optional.ofNullable(aggregates);
+    }
+
+    /**
+     * 由彙總直接回答的計畫：區域平均（不含分數條件），
+     * 以及不限區域 / 年份的前 N 名與高於門檻；其他計畫回傳 empty，交給快照逐列計算
+     */
+    public Optional<Object> answer(QueryPlan plan) {
+        RegionalAggregates current = aggregates;
+        if (current == null || plan.maxScore() != null) return Optional.empty();
+
+        if (plan.isAverage()) {
+            if (plan.minScore() != null) return Optional.empty();
+            return Optional.of(current.averageByRegion(plan.region(), plan.year()));
+        }
+        if (plan.region() != null || plan.year() != null) return Optional.empty();
+        return Optional.of(current.countries(plan.limit(), plan.minScore()));
+    }
+
+    private String changesPath() {
+        if (changedColumn.isBlank()) {
+            return FEED_PATH + "&id=gt." + lastId + "&order=id.asc";
+        }
+        String condition = "(id.gt." + lastId
+                + (lastVersion == null ? "" : "," + changedColumn + ".gt.\"" + lastVersion + "\"") + ")";
+        return FEED_PATH + versionSelect() + "&or=" + URLEncoder.encode(condition, StandardCharsets.UTF_8)
+                + "&order=id.asc";
+    }
+
+    private String versionSelect() {
+        return changedColumn.isBlank() ? "" : "," + changedColumn;
+    }
+
+    private String versionColumn() {
+        return changedColumn.isBlank() ? null : changedColumn;
+    }
+
+    /**
+     * 收集變更列並推進游標（最大 id 與最新版本），成功套用後才寫回
+     */
+    private LpiRowDecoder.FeedHandler collect(List<RegionalAggregates.Update> updates, Cursor cursor) {
+        return (update, version) -> {
+            if (update.id() < 0) return;
+            updates.add(update);
+            cursor.id = Math.max(cursor.id, update.id());
+            if (version != null && (cursor.version == null || newer(version, cursor.version))) cursor.version = version;
+        };
+    }
+
+    private static final class Cursor {
+        long id;
+        String version;
+
+        Cursor(long id, String version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 版本欄位可能是數字（序號）或 ISO 時間字串：兩邊都是整數時以數值比較，否則以字串比較
+     */
+    static boolean newer(String candidate, String current) {
+        try {
+            return Long.parseLong(candidate) > Long.parseLong(current);
+        } catch (NumberFormatException e) {
+            return candidate.compareTo(current) > 0;
+        }
+    }
+}
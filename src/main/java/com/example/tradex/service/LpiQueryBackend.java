@@ -0,0 +1,57 @@
+package com.example.tradex.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.example.tradex.query.PostgrestQuery;
+import com.example.tradex.query.QueryPlan;
+
+/**
+ * 核心查詢（QueryPlan）的執行端，依部署設定 lpi.query.backend 切換：
+ * snapshot（預設，記憶體快照）或 jdbc（直接在 Postgres 上聚合）
+ *
+ * 回傳格式與前端約定一致：國家列表為 country / region / lpi_score，
+ * 區域平均為「大寫區域 -> 平均分數」。
+ */
+public interface LpiQueryBackend {
+
+    /**
+     * 各區域平均分數（套用計畫中的分數 / 區域 / 年份條件）
+     */
+    Map<String, Double> averageByRegion(QueryPlan plan);
+
+    /**
+     * 國家列表：套用條件後每國取最高分，由高到低取前 limit 名（同分並列），limit = 0 表示全部
+     */
+    List<Map<String, Object>> countries(QueryPlan plan);
+
+    /**
+     * 重新整理後端資料（快照重新載入 / 物化檢視刷新）
+     */
+    void refresh();
+
+    default Object execute(QueryPlan plan) {
+        return plan.isAverage() ? averageByRegion(plan) : countries(plan);
+    }
+
+    /**
+     * 批次執行多個計畫，結果順序與 plans 相同；預設逐一執行
+     */
+    default List<Object> executeAll(List<QueryPlan> plans) {
+        List<Object> results = new ArrayList<>(plans.size());
+        for (QueryPlan plan : plans) {
+            results.add(execute(plan));
+        }
+        return results;
+    }
+
+    /**
+     * 在本地資料上執行 LLM 產生的 PostgREST 查詢；做不到（資料未載入、用到本地沒有的欄位）時回傳 empty，
+     * 由呼叫端改向 Supabase 查詢。預設一律 empty
+     */
+    default Optional<List<Map<String, Object>>> evaluate(PostgrestQuery query) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.tradex.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Predicate;
+
+import org.springframework.stereotype.Component;
+
+import com.example.tradex.model.LpiRow;
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.model.RegionalAggregates;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 以 Jackson token stream 逐列解碼 Supabase 回傳的 JSON 陣列
+ *
+ * 不建立 List<Map>：每讀完一個物件就清洗分數、做字典編碼，
+ * 通過 filter 的列直接寫進欄式 Builder，記憶體只與保留的列數成正比。
+ */
+@Component
+public class LpiRowDecoder {
+
+    private final JsonFactory jsonFactory;
+    private final ScoreParserService scoreParserService;
+
+    public LpiRowDecoder(ObjectMapper objectMapper, ScoreParserService scoreParserService) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.scoreParserService = scoreParserService;
+    }
+
+    /**
+     * 解碼統計：讀到的列數、分數無法解析的列數、寫入 Builder 的列數
+     */
+    public record Result(long rows, long parseFailures, long kept) {
+
+        public static final Result EMPTY = new Result(0, 0, 0);
+
+        /**
+         * 合併分段讀取的統計
+         */
+        public Result plus(Result other) {
+            return new Result(rows + other.rows, parseFailures + other.parseFailures, kept + other.kept);
+        }
+    }
+
+    public Result decode(InputStream body, LpiSnapshot.Builder builder, Predicate<LpiRow> filter) throws IOException {
+        long[] kept = new long[1];
+        Result result = readRows(body, null, (id, country, region, score, year, version) -> {
+            if (Double.isNaN(score)) return;
+            LpiRow row = new LpiRow(builder.internCountry(country), builder.internRegion(region), score, year);
+            if (filter.test(row)) {
+                builder.add(row);
+                kept[0]++;
+            }
+        });
+        return new Result(result.rows(), result.parseFailures(), kept[0]);
+    }
+
+    /**
+     * 變更來源（change feed）的一列：帶著 id 與版本欄位（例如 updated_at）的原始值
+     */
+    @FunctionalInterface
+    public interface FeedHandler {
+        void accept(RegionalAggregates.Update update, String version);
+    }
+
+    /**
+     * 解碼變更列，分數無法解析的列也會交給 handler（score 為 NaN），由呼叫端視同刪除
+     *
+     * @param versionColumn 版本欄位名稱，null 表示不讀
+     */
+    public Result decodeFeed(InputStream body, String versionColumn, FeedHandler handler) throws IOException {
+        return readRows(body, versionColumn, (id, country, region, score, year, version) ->
+                handler.accept(new RegionalAggregates.Update(id, country, region, score, year), version));
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void accept(long id, String country, String region, double score, int year, String version);
+    }
+
+    private Result readRows(InputStream body, String versionColumn, RowHandler handler) throws IOException {
+        long rows = 0;
+        long parseFailures = 0;
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Supabase 回應不是 JSON 陣列");
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long id = -1;
+                String country = null;
+                String region = null;
+                double score = Double.NaN;
+                int year = 0;
+                String version = null;
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "id" -> id = readId(parser, value);
+                        case "country" -> country = textOrNull(parser, value);
+                        case "region" -> region = textOrNull(parser, value);
+                        case "lpi_score" -> score = readScore(parser, value);
+                        case "year" -> year = readYear(parser, value);
+                        default -> {
+                            if (field.equals(versionColumn)) version = textOrNull(parser, value);
+                            else parser.skipChildren();
+                        }
+                    }
+                }
+
+                rows++;
+                if (Double.isNaN(score)) parseFailures++;
+                handler.accept(id, country, region, score, year, version);
+            }
+        }
+        return new Result(rows, parseFailures, rows - parseFailures);
+    }
+
+    private String textOrNull(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) return null;
+        if (value.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getText();
+    }
+
+    private double readScore(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            double v = parser.getDoubleValue();
+            return v >= 0 && v != Double.POSITIVE_INFINITY ? v : Double.NaN;
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            return scoreParserService.parseScore(parser.getText());
+        }
+        parser.skipChildren();
+        return Double.NaN;
+    }
+
+    private long readId(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) return parser.getLongValue();
+        parser.skipChildren();
+        return -1;
+    }
+
+    private int readYear(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) return parser.getIntValue();
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Integer.parseInt(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        parser.skipChildren();
+        return 0;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.tradex.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.model.LpiSnapshotFile;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 維護 countries_lpi 的常駐快照：啟動時載入，之後在背景定期刷新。
+ * 載入失敗時保留舊快照（或維持空值），查詢端會自動退回 Supabase。
+ *
+ * 設定 lpi.snapshot.file 時，啟動先讀上次存下的快照檔（毫秒級），之後的刷新照常進行，
+ * 資料有變動才重寫快照檔；同一台主機上的副本共用同一個檔案。
+ */
+@Service
+public class LpiSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(LpiSnapshotService.class);
+
+    static final String SNAPSHOT_PATH = "/rest/v1/countries_lpi?select=country,region,lpi_score,year";
+
+    @Autowired
+    private PartitionedFetcher partitionedFetcher;
+
+    @Autowired
+    private DatasetVersion datasetVersion;
+
+    @Autowired
+    private AskMetrics askMetrics;
+
+    @Value("${lpi.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lpi.snapshot.file:}")
+    private String snapshotFile;
+
+    private volatile LpiSnapshot snapshot;
+
+    // 快照檔目前內容的驗證值，相同就不必重寫
+    private volatile String persistedValidator;
+
+    /**
+     * 啟動時先從快照檔載入，讓第一批請求不必等 Supabase；檔案不存在或損毀時等背景刷新
+     */
+    @PostConstruct
+    public void loadFromFile() {
+        if (!enabled || snapshotFile.isBlank()) return;
+        Path file = Path.of(snapshotFile);
+        if (!Files.exists(file)) return;
+
+        long start = System.nanoTime();
+        try {
+            LpiSnapshotFile.Loaded loaded = LpiSnapshotFile.read(file);
+            snapshot = loaded.snapshot();
+            persistedValidator = loaded.validator();
+            datasetVersion.observe("snapshot", loaded.validator());
+            // 第一次刷新帶著檔案的驗證值送條件式請求，資料沒變只花一次 304
+            partitionedFetcher.seed(SNAPSHOT_PATH, loaded.validator(), loaded.snapshot().size());
+            log.info("已從快照檔載入 {} 筆資料（{} ms）", loaded.snapshot().size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("快照檔 {} 無法使用，等待 Supabase 載入: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 背景刷新：initialDelay = 0 讓啟動時就載入一次
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${lpi.snapshot.refresh-interval-ms:300000}")
+    public void refresh() {
+        if (!enabled) return;
+
+        try {
+            LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+            Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> fetched = askMetrics.refresh("snapshot",
+                    () -> partitionedFetcher.rowsIfModified(SNAPSHOT_PATH, builder, row -> true));
+            if (fetched.isEmpty() && snapshot != null) {
+                datasetVersion.confirm();
+                log.debug("LPI 資料未變更（304），沿用現有快照");
+                return;
+            }
+            if (fetched.isEmpty()) {
+                throw new IllegalStateException("尚無快照卻收到 304");
+            }
+
+            LpiRowDecoder.Result result = fetched.get().value();
+            LpiSnapshot loaded = builder.build();
+            snapshot = loaded;
+            datasetVersion.observe("snapshot", fetched.get().validator());
+            askMetrics.recordRows("snapshot", result.rows(), result.parseFailures());
+            log.info("LPI 快照已更新：{} 筆有效資料（原始 {} 筆，分數無法解析 {} 筆）",
+                    loaded.size(), result.rows(), result.parseFailures());
+            persist(loaded, fetched.get().validator());
+        } catch (Exception e) {
+            log.warn("LPI 快照刷新失敗，沿用舊快照: {}", e.getMessage());
+        }
+    }
+
+    private void persist(LpiSnapshot loaded, String validator) {
+        if (snapshotFile.isBlank() || validator.equals(persistedValidator)) return;
+        try {
+            LpiSnapshotFile.write(Path.of(snapshotFile), loaded, validator);
+            persistedValidator = validator;
+        } catch (IOException | RuntimeException e) {
+            log.warn("快照檔寫入失敗: {}", e.getMessage());
+        }
+    }
+
+    public Optional<LpiSnapshot> current() {
+        return Optional.ofNullable(snapshot);
+    }
+}
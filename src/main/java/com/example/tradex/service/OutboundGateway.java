@@ -0,0 +1,135 @@
+package com.example.tradex.service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 對外呼叫的閘道：每個上游一個 AdaptiveLimiter，另外合併同時進行中的相同 Supabase 讀取
+ *
+ * 尖峰時超過上游負荷的請求在這裡排隊，排不進去就以 UpstreamOverloadedException 快速失敗，
+ * 不會所有請求一起壓上去、一起逾時再一起重試。
+ * 上游回 429 / 5xx 或逾時視為過載訊號，併發上限立即減半。
+ */
+@Component
+public class OutboundGateway {
+
+    public enum Upstream {
+        SUPABASE,
+        OPENROUTER;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Map<Upstream, AdaptiveLimiter> limiters = new EnumMap<>(Upstream.class);
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public OutboundGateway(MeterRegistry registry,
+                           @Value("${http.supabase.gateway.initial-limit:10}") int supabaseInitial,
+                           @Value("${http.supabase.max-connections:50}") int supabaseMax,
+                           @Value("${http.supabase.gateway.queue-size:200}") int supabaseQueue,
+                           @Value("${http.supabase.gateway.queue-timeout-ms:2000}") long supabaseQueueTimeoutMs,
+                           @Value("${http.openrouter.gateway.initial-limit:5}") int openRouterInitial,
+                           @Value("${http.openrouter.max-connections:50}") int openRouterMax,
+                           @Value("${http.openrouter.gateway.queue-size:100}") int openRouterQueue,
+                           @Value("${http.openrouter.gateway.queue-timeout-ms:5000}") long openRouterQueueTimeoutMs,
+                           @Value("${http.gateway.latency-tolerance:2.0}") double tolerance) {
+        limiters.put(Upstream.SUPABASE, new AdaptiveLimiter("supabase",
+                supabaseInitial, 1, supabaseMax, supabaseQueue, supabaseQueueTimeoutMs, tolerance));
+        limiters.put(Upstream.OPENROUTER, new AdaptiveLimiter("openrouter",
+                openRouterInitial, 1, openRouterMax, openRouterQueue, openRouterQueueTimeoutMs, tolerance));
+
+        limiters.forEach((upstream, limiter) -> {
+            Gauge.builder("lpi.upstream.limit", limiter, AdaptiveLimiter::limit)
+                    .description("上游目前的併發上限").tag("upstream", upstream.label()).register(registry);
+            Gauge.builder("lpi.upstream.inflight", limiter, AdaptiveLimiter::inFlight)
+                    .description("上游進行中的請求數").tag("upstream", upstream.label()).register(registry);
+            Gauge.builder("lpi.upstream.queued", limiter, AdaptiveLimiter::queued)
+                    .description("等待上游名額的請求數").tag("upstream", upstream.label()).register(registry);
+            FunctionCounter.builder("lpi.upstream.rejected", limiter, l -> l.stats().get("rejected").doubleValue())
+                    .description("因上游過載被快速拒絕的請求數").tag("upstream", upstream.label()).register(registry);
+        });
+    }
+
+    /**
+     * 取得名額後執行 work；work 收到回應標頭時應呼叫 permit.responded()（沒呼叫就以整段時間計算延遲）
+     *
+     * @throws UpstreamOverloadedException 排不到名額
+     */
+    public <T> T call(Upstream upstream, Function<AdaptiveLimiter.Permit, T> work) {
+        try (AdaptiveLimiter.Permit permit = limiters.get(upstream).acquire()) {
+            try {
+                return work.apply(permit);
+            } catch (RuntimeException e) {
+                if (isOverloadSignal(e)) permit.dropped();
+                else permit.ignored();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 同一個 key（完整的 GET URL）同時只執行一次，其他呼叫者等待並共用同一個結果或例外
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T coalesce(String key, Supplier<T> call) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return (T) running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw e;
+            }
+        }
+
+        try {
+            T value = call.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        limiters.forEach((upstream, limiter) -> stats.put(upstream.label(), limiter.stats()));
+        stats.put("coalesced", coalesced.get());
+        return stats;
+    }
+
+    /**
+     * 429、5xx 與連線 / 讀取逾時代表上游撐不住；其他錯誤（400、404 等）與負載無關
+     */
+    static boolean isOverloadSignal(RuntimeException e) {
+        if (e instanceof HttpClientErrorException.TooManyRequests) return true;
+        if (e instanceof HttpServerErrorException) return true;
+        return e instanceof ResourceAccessException;
+    }
+}
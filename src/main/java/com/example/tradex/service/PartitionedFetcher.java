@@ -0,0 +1,253 @@
+package com.example.tradex.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import com.example.tradex.model.LpiRow;
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.model.RegionalAggregates;
+
+/**
+ * 整張表（或大範圍）讀取：先以 Prefer: count=exact 探測總列數，超過 lpi.fetch.partition-rows
+ * 就依 order=id.asc 切成 Range 分段，以虛擬執行緒同時讀取、各自解碼
+ *
+ * 分段依序合併：前面的分段一解碼完就併入結果，不必等全部完成，
+ * 同時進行的分段數由 lpi.fetch.parallelism 與 OutboundGateway 的併發上限共同限制。
+ * 每段的列數不可超過 PostgREST 的 max-rows（Supabase 預設 1000），被截斷的分段（Content-Range 或解碼列數不符）
+ * 會讓整批讀取失敗，不會把不完整的資料當成成功。
+ * 列數不多、上游沒回報總數或探測失敗時，退回原本的單一請求（含條件式讀取的 304）。
+ * 回應的 gzip 由 HttpClient 自動協商與解壓。
+ *
+ * 探測（資料庫上的 count(*)）只在需要時送出：記住每個路徑上次的列數，上次不多就直接走單一請求；
+ * 上次需要分段時，條件式讀取以帶 ETag / Last-Modified 的 HEAD 探測，未變更（304）就不再讀取。
+ */
+@Service
+public class PartitionedFetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedFetcher.class);
+
+    private static final int KNOWN_ROWS_MAX_SIZE = 1000;
+
+    private final SupabaseClient supabaseClient;
+    private final LpiRowDecoder lpiRowDecoder;
+    private final AskMetrics askMetrics;
+    private final int partitionRows;
+    private final int parallelism;
+
+    // 每個路徑上次讀到的列數，決定下次要不要探測
+    private final Map<String, Long> knownRows = new ConcurrentHashMap<>();
+
+    public PartitionedFetcher(SupabaseClient supabaseClient, LpiRowDecoder lpiRowDecoder, AskMetrics askMetrics,
+                              @Value("${lpi.fetch.partition-rows:1000}") int partitionRows,
+                              @Value("${lpi.fetch.parallelism:4}") int parallelism) {
+        this.supabaseClient = supabaseClient;
+        this.lpiRowDecoder = lpiRowDecoder;
+        this.askMetrics = askMetrics;
+        this.partitionRows = Math.max(1, partitionRows);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 讀取資料列寫進 builder（filter 在解碼時套用）
+     */
+    public LpiRowDecoder.Result rows(String apiPath, LpiSnapshot.Builder builder, Predicate<LpiRow> filter) {
+        LpiRowDecoder.Result[] total = {LpiRowDecoder.Result.EMPTY};
+        fetch(apiPath, false, body -> {
+            LpiSnapshot.Builder part = new LpiSnapshot.Builder();
+            return new Decoded<>(part, lpiRowDecoder.decode(body, part, filter));
+        }, decoded -> {
+            builder.addAll(decoded.value());
+            total[0] = total[0].plus(decoded.result());
+        });
+        return total[0];
+    }
+
+    /**
+     * 同 rows，但走條件式讀取：未變更（304）回傳 empty；
+     * 驗證值為上游的 ETag，上游沒有 ETag 時是內容的 CRC32C（分段讀取為各段的組合），由呼叫端比對是否真的有變
+     */
+    public Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> rowsIfModified(
+            String apiPath, LpiSnapshot.Builder builder, Predicate<LpiRow> filter) {
+        LpiRowDecoder.Result[] total = {LpiRowDecoder.Result.EMPTY};
+        return fetch(apiPath, true, body -> {
+            LpiSnapshot.Builder part = new LpiSnapshot.Builder();
+            return new Decoded<>(part, lpiRowDecoder.decode(body, part, filter));
+        }, decoded -> {
+            builder.addAll(decoded.value());
+            total[0] = total[0].plus(decoded.result());
+        }).map(validator -> new SupabaseClient.Conditional<>(total[0], validator));
+    }
+
+    /**
+     * 變更來源的條件式讀取；handler 只在呼叫端的執行緒上依 id 順序呼叫
+     */
+    public Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> feedIfModified(
+            String apiPath, String versionColumn, LpiRowDecoder.FeedHandler handler) {
+        LpiRowDecoder.Result[] total = {LpiRowDecoder.Result.EMPTY};
+        return fetch(apiPath, true, body -> {
+            List<FeedRow> part = new ArrayList<>();
+            return new Decoded<>(part, lpiRowDecoder.decodeFeed(body, versionColumn,
+                    (update, version) -> part.add(new FeedRow(update, version))));
+        }, decoded -> {
+            decoded.value().forEach(row -> handler.accept(row.update(), row.version()));
+            total[0] = total[0].plus(decoded.result());
+        }).map(validator -> new SupabaseClient.Conditional<>(total[0], validator));
+    }
+
+    private record Decoded<P>(P value, LpiRowDecoder.Result result) {}
+
+    private record FeedRow(RegionalAggregates.Update update, String version) {}
+
+    /**
+     * @param decode 在各分段的執行緒上解碼，不可共用可變狀態
+     * @param merge  在呼叫端的執行緒上依分段順序呼叫
+     * @return 內容的驗證值；條件式讀取且未變更時 empty
+     */
+    private <P> Optional<String> fetch(String apiPath, boolean conditional,
+                                       SupabaseClient.BodyHandler<Decoded<P>> decode, Consumer<Decoded<P>> merge) {
+        Long known = knownRows.get(apiPath);
+        if (known != null && known <= partitionRows) return single(apiPath, conditional, decode, merge);
+
+        Optional<SupabaseClient.Count> probed = probe(apiPath, conditional);
+        if (probed.isEmpty()) {
+            log.debug("countries_lpi 未變更（HEAD 304），略過分段讀取");
+            return Optional.empty();
+        }
+        long total = probed.get().total();
+        if (total <= partitionRows) return single(apiPath, conditional, decode, merge);
+
+        String validator = askMetrics.time(AskMetrics.Stage.FETCH, () -> partitioned(apiPath, total, decode, merge));
+        remember(apiPath, total);
+        if (conditional) supabaseClient.remember(apiPath, probed.get());
+        // HEAD 有 ETag 就以它作為驗證值，存下來之後（seed）能直接拿來送條件式探測
+        String etag = probed.get().etag();
+        return Optional.of(conditional && etag != null ? etag : validator);
+    }
+
+    /**
+     * 以先前存下的驗證值與列數預先填入（例如重啟時讀到的快照檔），第一次條件式讀取就能拿到 304；
+     * 驗證值不是上游的 ETag（而是內容的 CRC32C）時只記住列數
+     */
+    public void seed(String apiPath, String validator, long rows) {
+        remember(apiPath, rows);
+        if (SupabaseClient.isEntityTag(validator)) {
+            supabaseClient.remember(apiPath, new SupabaseClient.Count(rows, validator, null));
+        }
+    }
+
+    private <P> Optional<String> single(String apiPath, boolean conditional,
+                                        SupabaseClient.BodyHandler<Decoded<P>> decode, Consumer<Decoded<P>> merge) {
+        long[] rows = {-1};
+        SupabaseClient.BodyHandler<Void> handler = body -> {
+            Decoded<P> decoded = decode.handle(body);
+            rows[0] = decoded.result().rows();
+            merge.accept(decoded);
+            return null;
+        };
+        Optional<String> validator;
+        if (conditional) {
+            validator = supabaseClient.streamIfModified(apiPath, handler).map(SupabaseClient.Conditional::validator);
+        } else {
+            supabaseClient.stream(apiPath, handler);
+            validator = Optional.of("");
+        }
+        // 304 時沒有讀到內容，沿用上次的列數
+        if (rows[0] >= 0) remember(apiPath, rows[0]);
+        return validator;
+    }
+
+    /**
+     * 總列數，無法得知或探測失敗時為 -1（改走單一請求）；條件式探測未變更時 empty，過載照常往外丟
+     */
+    private Optional<SupabaseClient.Count> probe(String apiPath, boolean conditional) {
+        try {
+            if (conditional) return supabaseClient.countIfModified(apiPath);
+            return Optional.of(new SupabaseClient.Count(supabaseClient.count(apiPath), null, null));
+        } catch (RestClientException e) {
+            log.debug("countries_lpi 總列數探測失敗，改用單一請求: {}", e.getMessage());
+            return Optional.of(new SupabaseClient.Count(-1, null, null));
+        }
+    }
+
+    private void remember(String apiPath, long rows) {
+        // 路徑種類有限（快照、彙總與各計畫的臨時讀取），超過上限時整個清空
+        if (knownRows.size() >= KNOWN_ROWS_MAX_SIZE) knownRows.clear();
+        knownRows.put(apiPath, rows);
+    }
+
+    private <P> String partitioned(String apiPath, long total, SupabaseClient.BodyHandler<Decoded<P>> decode,
+                                   Consumer<Decoded<P>> merge) {
+        String ordered = apiPath.contains("order=") ? apiPath : apiPath + "&order=id.asc";
+        int partitions = (int) ((total + partitionRows - 1) / partitionRows);
+        Semaphore inFlight = new Semaphore(parallelism);
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, total));
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<SupabaseClient.Conditional<Decoded<P>>>> parts = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                long from = (long) i * partitionRows;
+                long to = Math.min(total, from + partitionRows) - 1;
+                parts.add(executor.submit(() -> {
+                    inFlight.acquire();
+                    try {
+                        return supabaseClient.streamRange(ordered, from, to, decode);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < partitions; i++) {
+                SupabaseClient.Conditional<Decoded<P>> fetched = await(parts.get(i));
+                long expected = Math.min(total - (long) i * partitionRows, partitionRows);
+                if (fetched.value().result().rows() != expected) {
+                    throw new IllegalStateException("第 " + (i + 1) + " 段預期 " + expected + " 列，只讀到 "
+                            + fetched.value().result().rows() + " 列");
+                }
+                merge.accept(fetched.value());
+                crc.update(fetched.validator().getBytes(StandardCharsets.US_ASCII));
+            }
+        } catch (RuntimeException e) {
+            // 一段失敗整批作廢，取消其餘分段
+            executor.shutdownNow();
+            throw e;
+        } finally {
+            executor.close();
+        }
+        log.debug("countries_lpi 分 {} 段讀取 {} 列", partitions, total);
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("分段讀取被中斷", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException("分段讀取失敗", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.tradex.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * /api/ask 的結果快取：以「正規化的查詢 key + 資料版本號」為鍵
+ *
+ * 1. LRU 淘汰（LinkedHashMap access-order），上限 lpi.result-cache.max-size
+ * 2. 資料版本號前進時，舊版本的結果全部作廢
+ * 3. 同一組 key + 版本號的 ETag 固定，瀏覽器可用 If-None-Match 換到 304
+ *
+ * loader 回傳 null 或拋出例外時不寫入快取。
+ */
+@Service
+public class ResultCache {
+
+    private final int maxSize;
+    private final Map<String, Object> entries;
+    private long entriesVersion;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ResultCache(@Value("${lpi.result-cache.max-size:1000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > ResultCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * 取得 key 在指定版本下的結果，沒有就呼叫 loader 計算並寫入
+     */
+    public Object get(String key, long version, Supplier<Object> loader) {
+        synchronized (entries) {
+            Object cached = version == entriesVersion ? entries.get(key) : null;
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        Object value = loader.get();
+        if (value == null) return null;
+
+        synchronized (entries) {
+            // 版本號只會前進：遇到新版本先清掉舊結果，比目前還舊的計算結果直接丟掉
+            if (version > entriesVersion) {
+                entries.clear();
+                entriesVersion = version;
+            }
+            if (version == entriesVersion) entries.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * key + 版本號的 ETag（不含引號），內容相同的結果一定得到相同的 ETag
+     */
+    public static String etag(String key, long version) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return "v" + version + "-" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Map<String, Long> stats() {
+        int size;
+        long version;
+        synchronized (entries) {
+            size = entries.size();
+            version = entriesVersion;
+        }
+        return Map.of(
+                "size", (long) size,
+                "version", version,
+                "hits", hits.get(),
+                "misses", misses.get());
+    }
+}
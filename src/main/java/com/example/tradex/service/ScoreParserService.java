@@ -2,12 +2,21 @@ package com.example.tradex.service;
 
 import org.springframework.stereotype.Service;
 
+import com.example.tradex.model.CountryCanonicalizer;
+import com.example.tradex.query.TopNSelector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Collections;
-import java.util.Objects;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoublePredicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,13 +49,178 @@ public class ScoreParserService {
         }
     }
 
+    // 同一份對照表編成字元 trie，解析時逐字走訪，不用切字串也不用查 HashMap
+    private static final NumberWordTrie NUM_WORD_TRIE = new NumberWordTrie(NUM_WORD_MAP);
+
+    private static final String POINT = " point ";
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // 2^53 以內的整數轉 double 沒有誤差，除以 10^k 的結果與 Double.parseDouble 相同
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // 髒資料（文字分數 / 無法解析的垃圾值）的解析結果快取，超過上限就整個清空
+    private static final int MEMO_MAX_SIZE = 10_000;
+    private final Map<String, Double> dirtyMemo = new ConcurrentHashMap<>();
+
+    private final CountryCanonicalizer countries = CountryCanonicalizer.shared();
+
+    /**
+     * 數值解析器：回傳清洗後的分數，無法解析時回傳 NaN
+     *
+     * 1. 純數字字串（只含數字與一個小數點）直接逐字元計算，不產生任何物件
+     * 2. 文字分數（"three point six six"）走 trie 狀態機，結果依原字串快取
+     */
+    public double parseScore(Object rawValue) {
+        if (rawValue == null) return Double.NaN;
+        if (rawValue instanceof Number n) {
+            double v = n.doubleValue();
+            return (v >= 0 && v != Double.POSITIVE_INFINITY) ? v : Double.NaN;
+        }
+
+        String s = rawValue.toString();
+        int lo = 0;
+        int hi = s.length();
+        // 與 String.trim() 相同的空白定義
+        while (lo < hi && s.charAt(lo) <= ' ') lo++;
+        while (hi > lo && s.charAt(hi - 1) <= ' ') hi--;
+        if (lo == hi) return Double.NaN;
+
+        if (isPlainNumber(s, lo, hi)) {
+            return parsePlainNumber(s, lo, hi);
+        }
+
+        Double cached = dirtyMemo.get(s);
+        if (cached != null) return cached;
+
+        double value = parseWords(s, lo, hi);
+        if (dirtyMemo.size() >= MEMO_MAX_SIZE) dirtyMemo.clear();
+        dirtyMemo.put(s, value);
+        return value;
+    }
+
+    /**
+     * 單一英文數字詞（"five"、"twenty-one"）轉整數，不認得回傳 -1
+     */
+    public int parseNumberWord(String word) {
+        return word == null ? -1 : NUM_WORD_TRIE.lookup(word, 0, word.length());
+    }
+
     /**
      * 通用解析器：將文字型分數（如 "three point six six"）轉換為數字字串（"3.66"）
+     * 數字型與無法解析的值原樣（小寫、去空白）回傳，由後續 Filter 處理
      */
     public String parse(Object rawValue) {
         if (rawValue == null) return "";
         String normalized = rawValue.toString().toLowerCase().trim();
 
+        double value = parseScore(normalized);
+        return (Double.isNaN(value) || !normalized.contains(POINT)) ? normalized : Double.toString(value);
+    }
+
+    private static boolean isPlainNumber(String s, int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && c != '.') return false;
+        }
+        return true;
+    }
+
+    /**
+     * 解析只含數字與小數點的字串；多個小數點或沒有數字視為無效
+     */
+    private static double parsePlainNumber(String s, int lo, int hi) {
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = lo; i < hi; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (scale >= 0) return Double.NaN;
+                scale = 0;
+                continue;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+            if (scale >= 0) scale++;
+            if (mantissa >= MAX_EXACT_MANTISSA) {
+                return slowParse(s.substring(lo, hi));
+            }
+        }
+        if (digits == 0) return Double.NaN;
+        if (scale <= 0) return mantissa;
+        if (scale >= POW10.length) return slowParse(s.substring(lo, hi));
+        return mantissa / POW10[scale];
+    }
+
+    /**
+     * "xxx point yyy" 格式：整數部分必須整段對應一個數字詞，
+     * 小數部分先整段比對（"fifteen"），否則逐字串接（"six six" -> 66）
+     */
+    private double parseWords(String s, int lo, int hi) {
+        int point = indexOfIgnoreCase(s, POINT, lo, hi);
+        if (point < 0 || indexOfIgnoreCase(s, POINT, point + POINT.length(), hi) >= 0) return Double.NaN;
+
+        int integerPart = NUM_WORD_TRIE.lookup(s, lo, point);
+        if (integerPart < 0) return Double.NaN;
+
+        int decStart = point + POINT.length();
+        long fraction;
+        int fractionDigits;
+
+        int whole = NUM_WORD_TRIE.lookup(s, decStart, hi);
+        if (whole >= 0) {
+            fraction = whole;
+            fractionDigits = whole >= 10 ? 2 : 1;
+        } else {
+            fraction = 0;
+            fractionDigits = 0;
+            int wordStart = decStart;
+            for (int i = decStart; i <= hi; i++) {
+                if (i < hi && s.charAt(i) != ' ') continue;
+                int n = NUM_WORD_TRIE.lookup(s, wordStart, i);
+                if (n >= 0) {
+                    int width = n >= 10 ? 2 : 1;
+                    fraction = fraction * (width == 2 ? 100 : 10) + n;
+                    fractionDigits += width;
+                    if (fractionDigits > 13) return slowParse(parseLegacy(s));
+                }
+                wordStart = i + 1;
+            }
+        }
+        if (fractionDigits == 0) return Double.NaN;
+
+        return (integerPart * (long) POW10[fractionDigits] + fraction) / POW10[fractionDigits];
+    }
+
+    private static int indexOfIgnoreCase(String s, String needle, int from, int hi) {
+        int last = hi - needle.length();
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < needle.length(); j++) {
+                if (Character.toLowerCase(s.charAt(i + j)) != needle.charAt(j)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static double slowParse(String value) {
+        if (!value.matches("^[0-9.]+$")) return Double.NaN;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * 舊版以字串切割的轉換方式，只在小數位數過長時作為備援
+     */
+    private String parseLegacy(Object rawValue) {
+        String normalized = rawValue.toString().toLowerCase().trim();
+
         // 檢查是否符合 "xxx point yyy" 格式
         if (normalized.contains(" point ")) {
             String[] sections = normalized.split(" point ");
@@ -87,103 +261,186 @@ public class ScoreParserService {
     /**
      * 給「前 N 名」用的資料清洗：
      * 1. 轉換 lpi_score 成數字
-     * 2. 以 country 做去重（忽略大小寫）
+     * 2. 以 country 做去重（CountryCanonicalizer：忽略大小寫、空白與常見別名）
      * 3. 每個國家只保留最高分那筆
-     * 4. 由高到低排序，取前 limit 名
+     * 4. 由高到低排序，取前 limit 名（同分並列，同分時依國家 key 排序）
      */
     public List<Map<String, Object>> processData(List<Map<String, Object>> data, Integer limit) {
         if (data == null || data.isEmpty()) {
             return Collections.emptyList();
         }
 
-        int finalLimit = (limit == null || limit <= 0) ? Integer.MAX_VALUE : limit;
+        // 以 bounded min-heap 取前 limit 名，與第 limit 名同分的國家一併保留
+        // 這樣如果第 5 名和第 6 名都是 4.04，兩者都會被包含進來
+        return selectBest(bestByCountry(data, score -> true), limit == null ? 0 : limit).stream()
+                .map(cs -> {
+                    Map<String, Object> result = new LinkedHashMap<>(); // 使用 LinkedHashMap 保持順序
+                    result.put("country", cs.displayName);
+                    result.put("region", cs.region);
+                    result.put("lpi_score", cs.score);
+                    return result;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 「高於門檻」查詢：先過濾分數嚴格大於門檻的列，再以國家去重（保留最高分），由高到低排序，
+     * 回傳原始資料列
+     */
+    public List<Map<String, Object>> filterAbove(List<Map<String, Object>> data, double threshold) {
+        if (data == null || data.isEmpty()) return Collections.emptyList();
+
+        return selectBest(bestByCountry(data, score -> score > threshold), 0).stream() // NaN 一律不通過
+                .map(cs -> cs.row)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 計算區域平均值 (處理大小寫與髒資料)，區域依第一次出現的順序排列
+     */
+    public Map<String, Double> averageByRegion(List<Map<String, Object>> data) {
+        if (data == null || data.isEmpty()) return Map.of();
+
+        // DoubleSummaryStatistics 與 Collectors.averagingDouble 同樣以補償加總計算平均
+        Map<String, DoubleSummaryStatistics> totals = new LinkedHashMap<>();
+        for (Map<String, Object> row : data) {
+            Object region = row.get("region");
+            Object rawScore = row.get("lpi_score");
+            if (region == null || rawScore == null) continue;
+
+            double score = parseScore(rawScore);
+            if (Double.isNaN(score)) continue;
+
+            totals.computeIfAbsent(region.toString().toUpperCase().trim(), k -> new DoubleSummaryStatistics()).accept(score);
+        }
+
+        Map<String, Double> result = new LinkedHashMap<>();
+        totals.forEach((region, stats) -> result.put(region, stats.getAverage()));
+        return result;
+    }
 
-        // 先整理成 CountryScore，再以國家去重
-        Map<String, CountryScore> bestByCountry = data.stream()
-                // 1. 過濾：country / lpi_score 不能為 null
-                .filter(row -> row.get("country") != null && row.get("lpi_score") != null)
-                .map(row -> {
-                    String countryRaw = row.get("country").toString().trim();
-                    if (countryRaw.isEmpty()) return null;
+    /**
+     * 以國家 id 去重，每國保留分數最高（同分取最先出現）的那筆；
+     * 以國家 id 為索引的陣列去重，已知國名不產生任何新字串
+     */
+    private List<CountryScore> bestByCountry(List<Map<String, Object>> data, DoublePredicate accept) {
+        CountryScore[] best = new CountryScore[countries.size() + 16];
+        for (Map<String, Object> row : data) {
+            // 1. 過濾：country / lpi_score 不能為 null
+            Object country = row.get("country");
+            Object rawScore = row.get("lpi_score");
+            if (country == null || rawScore == null) continue;
 
-                    // 修改後：去掉所有空格並轉大寫，這樣 "Viet Nam" 和 "Vietnam" 就會變成同一個 Key ("VIETNAM")
-                    String countryKey = countryRaw.replaceAll("\\s+", "").toUpperCase();
+            // three point six -> 3.6，無法解析回傳 NaN
+            double score = parseScore(rawScore);
+            if (Double.isNaN(score) || !accept.test(score)) continue;
 
-                    // 除錯用
-                    System.out.println("原始: " + countryRaw + " -> Key: " + countryKey);
+            // 國名正規化加別名表："Viet Nam" / "Vietnam"、"Korea, Rep." / "South Korea" 都是同一個 id
+            String countryRaw = country.toString();
+            int id = countries.idOf(countryRaw);
+            if (id < 0) continue;
 
-                    // three point six -> 3.6
-                    String cleanedScore = this.parse(row.get("lpi_score"));
-                    if (cleanedScore == null) return null;
+            // 2. 以國家 id 分組，只保留該國家最高分
+            if (id >= best.length) best = Arrays.copyOf(best, Math.max(id + 1, best.length * 2));
+            CountryScore current = best[id];
+            if (current == null || score > current.score) {
+                best[id] = new CountryScore(countries.key(id), countryRaw.trim(), row.get("region"), score, row);
+            }
+        }
+        List<CountryScore> result = new ArrayList<>();
+        for (CountryScore cs : best) {
+            if (cs != null) result.add(cs);
+        }
+        return result;
+    }
 
-                    String scoreStr = cleanedScore.trim();
-                    // 只接受數字與小數點
-                    if (!scoreStr.matches("^[0-9.]+$")) return null;
+    /**
+     * 由高到低排序取前 limit 名（同分依國家 key 排序），limit <= 0 表示全部
+     */
+    private List<CountryScore> selectBest(Collection<CountryScore> candidates, int limit) {
+        TopNSelector<CountryScore> selector = new TopNSelector<>(
+                limit, cs -> cs.score, Comparator.comparing(cs -> cs.countryKey));
+        candidates.forEach(selector::offer);
+        return selector.result();
+    }
 
-                    double score;
-                    try {
-                        score = Double.parseDouble(scoreStr);
-                    } catch (NumberFormatException e) {
-                        return null;
-                    }
+    /**
+     * 數字詞的字元 trie：a-z、空白、連字號共 28 種字元，節點以平坦 int 陣列儲存
+     */
+    private static final class NumberWordTrie {
+        private static final int ALPHABET = 28;
 
-                    Object region = row.get("region");
+        private int[] children = new int[ALPHABET * 64];
+        private int[] values = new int[64];
+        private int nodeCount = 1;
 
-                    return new CountryScore(countryKey, countryRaw, region, score);
-                })
-                .filter(Objects::nonNull)
-                // 2. 以 countryKey 分組，只保留該國家最高分
-                .collect(Collectors.toMap(
-                        cs -> cs.countryKey,
-                        cs -> cs,
-                        (cs1, cs2) -> (cs1.score >= cs2.score) ? cs1 : cs2
-                ));
-
-        // 2. 將去重後的結果先按分數由高到低排序
-        List<CountryScore> sortedAll = bestByCountry.values().stream()
-                .sorted((a, b) -> Double.compare(b.score, a.score))
-                .collect(Collectors.toList());
+        NumberWordTrie(Map<String, String> words) {
+            Arrays.fill(values, -1);
+            words.forEach((word, number) -> insert(word, Integer.parseInt(number)));
+        }
 
-        if (sortedAll.isEmpty()) return Collections.emptyList();
+        /**
+         * 整段 [from, to) 剛好是一個數字詞時回傳其數值，否則回傳 -1（大小寫不敏感）
+         */
+        int lookup(String s, int from, int to) {
+            if (from >= to) return -1;
+            int node = 0;
+            for (int i = from; i < to; i++) {
+                int slot = slot(s.charAt(i));
+                if (slot < 0) return -1;
+                node = children[node * ALPHABET + slot];
+                if (node == 0) return -1;
+            }
+            return values[node];
+        }
 
-        // 3. 計算門檻分數 (Threshold Score)
-        // 如果 limit 是 5，我們就看清單中第 5 名的分數是多少
-        double thresholdScore;
-        if (limit != null && limit > 0 && limit <= sortedAll.size()) {
-            thresholdScore = sortedAll.get(limit - 1).score;
-        } else {
-            // 如果不限制數量，或者資料量不足 limit，門檻就是最後一名的分數（或是直接全回傳）
-            thresholdScore = sortedAll.get(sortedAll.size() - 1).score;
+        private void insert(String word, int number) {
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                int index = node * ALPHABET + slot(word.charAt(i));
+                if (children[index] == 0) {
+                    ensureCapacity();
+                    children[index] = nodeCount++;
+                }
+                node = children[index];
+            }
+            values[node] = number;
         }
 
-        // 4. 過濾出所有「大於或等於」門檻分數的國家
-        // 這樣如果第 5 名和第 6 名都是 4.04，兩者都會被包含進來
-        return sortedAll.stream()
-                .filter(cs -> cs.score >= thresholdScore)
-                .map(cs -> {
-                    Map<String, Object> result = new LinkedHashMap<>(); // 使用 LinkedHashMap 保持順序
-                    result.put("country", cs.displayName);
-                    result.put("region", cs.region);
-                    result.put("lpi_score", cs.score);
-                    return result;
-                })
-                .collect(Collectors.toList());
+        private void ensureCapacity() {
+            if (nodeCount < values.length) return;
+            int newLength = values.length * 2;
+            children = Arrays.copyOf(children, newLength * ALPHABET);
+            int oldLength = values.length;
+            values = Arrays.copyOf(values, newLength);
+            Arrays.fill(values, oldLength, newLength, -1);
+        }
+
+        private static int slot(char c) {
+            if (c >= 'a' && c <= 'z') return c - 'a';
+            if (c >= 'A' && c <= 'Z') return c - 'A';
+            if (c == ' ') return 26;
+            if (c == '-') return 27;
+            return -1;
+        }
     }
 
     /**
      * 內部用的小資料結構：代表一個國家的最佳分數
      */
     private static class CountryScore {
-        final String countryKey;   // 用來去重（大寫）
+        final String countryKey;   // CountryCanonicalizer 的國家 key（同分排序用）
         final String displayName;  // 原始國名（顯示用）
         final Object region;
         final double score;
+        final Map<String, Object> row;  // 原始資料列（filterAbove 原樣回傳）
 
-        CountryScore(String countryKey, String displayName, Object region, double score) {
+        CountryScore(String countryKey, String displayName, Object region, double score, Map<String, Object> row) {
             this.countryKey = countryKey;
             this.displayName = displayName;
             this.region = region;
             this.score = score;
+            this.row = row;
         }
     }
 }
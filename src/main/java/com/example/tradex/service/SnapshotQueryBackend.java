@@ -0,0 +1,156 @@
+package com.example.tradex.service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.query.PostgrestQuery;
+import com.example.tradex.query.QueryPlan;
+
+/**
+ * 預設後端：區域平均與不限條件的排行先由增量維護的區域彙總回答，
+ * 其餘由常駐快照計算；快照尚未載入時，直接串流讀取 Supabase 臨時建一份
+ */
+@Service
+@ConditionalOnProperty(name = "lpi.query.backend", havingValue = "snapshot", matchIfMissing = true)
+public class SnapshotQueryBackend implements LpiQueryBackend {
+
+    private static final String TABLE_PATH = "/rest/v1/countries_lpi?select=";
+    private static final String ALL_COLUMNS = "country,region,lpi_score,year";
+
+    @Autowired
+    private LpiSnapshotService lpiSnapshotService;
+
+    @Autowired
+    private LpiAggregateService lpiAggregateService;
+
+    @Autowired
+    private PartitionedFetcher partitionedFetcher;
+
+    @Autowired
+    private AskMetrics askMetrics;
+
+    @Autowired
+    private ScoreParserService scoreParserService;
+
+    @Autowired
+    @Qualifier("lpiForkJoinPool")
+    private ForkJoinPool forkJoinPool;
+
+    @Value("${lpi.parallel.threshold:50000}")
+    private int parallelThreshold = Integer.MAX_VALUE;
+
+    @Value("${lpi.postgrest.local-enabled:true}")
+    private boolean localEnabled = true;
+
+    @Override
+    public Object execute(QueryPlan plan) {
+        return lpiAggregateService.answer(plan).orElseGet(() -> LpiQueryBackend.super.execute(plan));
+    }
+
+    /**
+     * 彙總能回答的先回答，其餘計畫在同一份快照上一次掃完；
+     * 快照尚未載入時只讀一次整張表，所有計畫共用
+     */
+    @Override
+    public List<Object> executeAll(List<QueryPlan> plans) {
+        Object[] results = new Object[plans.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < plans.size(); i++) {
+            Optional<Object> answered = lpiAggregateService.answer(plans.get(i));
+            if (answered.isPresent()) results[i] = answered.get();
+            else pending.add(i);
+        }
+
+        if (!pending.isEmpty()) {
+            LpiSnapshot snapshot = lpiSnapshotService.current().orElseGet(() -> fetch(QueryPlan.topN(0), ALL_COLUMNS));
+            List<Object> computed = scan(snapshot, pending.stream().map(plans::get).toList());
+            for (int i = 0; i < pending.size(); i++) {
+                results[pending.get(i)] = computed.get(i);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Double> averageByRegion(QueryPlan plan) {
+        return (Map<String, Double>) scan(snapshotOrFetch(plan), List.of(plan)).get(0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> countries(QueryPlan plan) {
+        return (List<Map<String, Object>>) scan(snapshotOrFetch(plan), List.of(plan)).get(0);
+    }
+
+    /**
+     * 快照已載入、查詢只用到快照有的欄位，且分數條件本來就會排除無效分數時，直接在快照上執行；
+     * 快照裡沒有分數無法解析的列，其他查詢（例如只篩區域、lpi_score=is.null）交給 Supabase
+     */
+    @Override
+    public Optional<List<Map<String, Object>>> evaluate(PostgrestQuery query) {
+        if (!localEnabled || !query.usesOnly(LpiSnapshot.COLUMNS) || !query.excludesNullScores()) {
+            return Optional.empty();
+        }
+        return lpiSnapshotService.current()
+                .map(snapshot -> query.compile(scoreParserService::parseScore).evaluate(snapshot.rows()));
+    }
+
+    @Override
+    public void refresh() {
+        lpiSnapshotService.refresh();
+        lpiAggregateService.resync();
+    }
+
+    /**
+     * 快照列數達 lpi.parallel.threshold 時在專用 ForkJoinPool 上分區塊平行掃描
+     */
+    private List<Object> scan(LpiSnapshot snapshot, List<QueryPlan> plans) {
+        return snapshot.executeAll(plans, forkJoinPool, parallelThreshold);
+    }
+
+    private LpiSnapshot snapshotOrFetch(QueryPlan plan) {
+        return lpiSnapshotService.current().orElseGet(() -> fetch(plan, columns(plan)));
+    }
+
+    /**
+     * 單一計畫只需要的欄位：區域平均用不到國名；有年份條件時要帶回 year，
+     * 臨時快照在本地套用同一個計畫時才比對得到
+     */
+    private static String columns(QueryPlan plan) {
+        String columns = plan.isAverage() ? "region,lpi_score" : "country,region,lpi_score";
+        return plan.year() == null ? columns : columns + ",year";
+    }
+
+    /**
+     * 區域 / 年份交給 PostgREST 過濾，分數條件在讀取時過濾
+     */
+    private LpiSnapshot fetch(QueryPlan plan, String columns) {
+        StringBuilder path = new StringBuilder(TABLE_PATH).append(columns);
+        if (plan.region() != null) {
+            path.append("&region=ilike.").append(URLEncoder.encode("*" + plan.region() + "*", StandardCharsets.UTF_8));
+        }
+        if (plan.year() != null) {
+            path.append("&year=eq.").append(plan.year());
+        }
+
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        LpiRowDecoder.Result result = partitionedFetcher.rows(path.toString(), builder,
+                row -> plan.acceptsScore(row.score()));
+        askMetrics.recordRows("request", result.rows(), result.parseFailures());
+        return builder.build();
+    }
+}
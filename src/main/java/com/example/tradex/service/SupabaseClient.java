@@ -0,0 +1,280 @@
+package com.example.tradex.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import static com.example.tradex.service.OutboundGateway.Upstream.SUPABASE;
+
+/**
+ * Supabase REST (PostgREST) 存取集中在這裡，Controller 與快照共用
+ *
+ * 所有請求都經過 OutboundGateway 的併發上限；一般讀取（fetchRows / fetchRaw）另外合併同時進行中的相同路徑
+ */
+@Service
+public class SupabaseClient {
+
+    // 從 application.properties 注入設定
+    @Value("${supabase.anon.key}")
+    private String supabaseKey;
+
+    @Value("${supabase.url}")
+    private String supabaseUrl;
+
+    @Autowired
+    @Qualifier("supabaseRestTemplate")
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private AskMetrics askMetrics;
+
+    @Autowired
+    private OutboundGateway gateway;
+
+    // 每個路徑上次回應的 ETag / Last-Modified
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+    /**
+     * 以 JSON 陣列形式讀取資料列；同一個路徑同時只送出一次，其他請求共用結果（呼叫端不可修改回傳的清單）
+     */
+    public List<Map<String, Object>> fetchRows(String apiPath) {
+        List<Map<String, Object>> rows = askMetrics.time(AskMetrics.Stage.FETCH, () -> gateway.coalesce(
+                "rows " + apiPath, () -> gateway.call(SUPABASE, permit -> restTemplate.exchange(
+                        supabaseUrl + apiPath, HttpMethod.GET, new HttpEntity<>(authHeaders()),
+                        new ParameterizedTypeReference<List<Map<String, Object>>>() {}).getBody())));
+        askMetrics.recordRows("request", rows == null ? 0 : rows.size(), 0);
+        return rows;
+    }
+
+    /**
+     * 串流讀取回應內容，body 只在 handler 執行期間有效
+     *
+     * apiPath 視為已編碼好的路徑（篩選值請先 URLEncoder 編碼），不再經過 URI 樣板二次編碼
+     */
+    public <T> T stream(String apiPath, BodyHandler<T> handler) {
+        return askMetrics.time(AskMetrics.Stage.FETCH, () -> gateway.call(SUPABASE, permit -> restTemplate.execute(
+                URI.create(supabaseUrl + apiPath), HttpMethod.GET,
+                request -> request.getHeaders().addAll(authHeaders()),
+                response -> {
+                    permit.responded();
+                    return handler.handle(response.getBody());
+                })));
+    }
+
+    /**
+     * 同 stream，但 apiPath 與 fetchRows 一樣經過 URI 樣板編碼，給 LLM 產生的未編碼路徑使用
+     */
+    public <T> T streamTemplate(String apiPath, BodyHandler<T> handler) {
+        return askMetrics.time(AskMetrics.Stage.FETCH, () -> gateway.call(SUPABASE, permit -> restTemplate.execute(
+                supabaseUrl + apiPath, HttpMethod.GET,
+                request -> request.getHeaders().addAll(authHeaders()),
+                response -> {
+                    permit.responded();
+                    return handler.handle(response.getBody());
+                })));
+    }
+
+    /**
+     * 條件式串流讀取：帶上次回應的 ETag / Last-Modified，上游回 304 時回傳 empty，不會重新傳輸
+     *
+     * 有變動時回傳 handler 的結果與這次內容的驗證值：上游有 ETag 就用 ETag，
+     * 否則用回應內容的 CRC32C（上游不支援條件請求時，仍可判斷內容是否真的變了）。
+     * 驗證值只在 handler 成功後才記住，解析失敗的回應下次會重新抓。
+     */
+    public <T> Optional<Conditional<T>> streamIfModified(String apiPath, BodyHandler<T> handler) {
+        Validators known = validators.get(apiPath);
+        return askMetrics.time(AskMetrics.Stage.FETCH, () -> gateway.call(SUPABASE, permit -> restTemplate.execute(
+                URI.create(supabaseUrl + apiPath), HttpMethod.GET,
+                request -> {
+                    request.getHeaders().addAll(authHeaders());
+                    if (known != null && known.etag() != null) request.getHeaders().setIfNoneMatch(known.etag());
+                    if (known != null && known.lastModified() != null) {
+                        request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, known.lastModified());
+                    }
+                },
+                response -> {
+                    permit.responded();
+                    if (response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) return Optional.empty();
+
+                    CRC32C crc = new CRC32C();
+                    T value = handleChecked(response.getBody(), crc, handler);
+
+                    String etag = response.getHeaders().getETag();
+                    String lastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+                    if (etag != null || lastModified != null) {
+                        validators.put(apiPath, new Validators(etag, lastModified));
+                    }
+                    return Optional.of(new Conditional<>(value, etag != null ? etag : Long.toHexString(crc.getValue())));
+                })));
+    }
+
+    /**
+     * 以 HEAD + Prefer: count=exact 取得符合條件的總列數，上游沒有回報總數時回傳 -1
+     *
+     * 不計入 FETCH 階段耗時，由呼叫端（PartitionedFetcher）統一計時
+     */
+    public long count(String apiPath) {
+        return gateway.call(SUPABASE, permit -> restTemplate.execute(
+                URI.create(supabaseUrl + apiPath), HttpMethod.HEAD,
+                request -> {
+                    request.getHeaders().addAll(authHeaders());
+                    request.getHeaders().set("Prefer", "count=exact");
+                },
+                response -> {
+                    permit.responded();
+                    return parseTotal(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+                }));
+    }
+
+    /**
+     * 同 count，但帶上次回應的 ETag / Last-Modified：上游回 304（內容未變）時回傳 empty
+     *
+     * 驗證值不在這裡記住，整批內容讀完後由呼叫端以 remember 寫回，讀取失敗時下次仍會重新抓
+     */
+    public Optional<Count> countIfModified(String apiPath) {
+        Validators known = validators.get(apiPath);
+        return gateway.call(SUPABASE, permit -> restTemplate.execute(
+                URI.create(supabaseUrl + apiPath), HttpMethod.HEAD,
+                request -> {
+                    request.getHeaders().addAll(authHeaders());
+                    request.getHeaders().set("Prefer", "count=exact");
+                    if (known != null && known.etag() != null) request.getHeaders().setIfNoneMatch(known.etag());
+                    if (known != null && known.lastModified() != null) {
+                        request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, known.lastModified());
+                    }
+                },
+                response -> {
+                    permit.responded();
+                    if (response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) return Optional.empty();
+                    return Optional.of(new Count(parseTotal(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)),
+                            response.getHeaders().getETag(), response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED)));
+                }));
+    }
+
+    /**
+     * 記住 countIfModified 探測到的驗證值，之後同一路徑的條件式請求會帶上它
+     */
+    public void remember(String apiPath, Count count) {
+        if (count.etag() != null || count.lastModified() != null) {
+            validators.put(apiPath, new Validators(count.etag(), count.lastModified()));
+        }
+    }
+
+    /**
+     * 驗證值是否為上游的 ETag（"..." 或 W/"..."），而不是自行計算的內容 CRC32C
+     */
+    public static boolean isEntityTag(String validator) {
+        return validator != null && (validator.startsWith("\"") || validator.startsWith("W/\""));
+    }
+
+    /**
+     * 以 Range 標頭讀取第 from ~ to 列（含兩端，從 0 起算），驗證值為這段內容的 CRC32C
+     *
+     * 路徑需自帶穩定的排序（例如 order=id.asc），各段才不會重疊或遺漏；
+     * 回應的 Content-Range 與要求的範圍不同（例如被 PostgREST 的 max-rows 截斷）時拋出 IllegalStateException。
+     * 同 count，不計入 FETCH 階段耗時
+     */
+    public <T> Conditional<T> streamRange(String apiPath, long from, long to, BodyHandler<T> handler) {
+        return gateway.call(SUPABASE, permit -> restTemplate.execute(
+                URI.create(supabaseUrl + apiPath), HttpMethod.GET,
+                request -> {
+                    request.getHeaders().addAll(authHeaders());
+                    request.getHeaders().set("Range-Unit", "items");
+                    request.getHeaders().set(HttpHeaders.RANGE, from + "-" + to);
+                },
+                response -> {
+                    permit.responded();
+                    String contentRange = response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE);
+                    if (contentRange != null && !contentRange.startsWith(from + "-" + to + "/")) {
+                        throw new IllegalStateException("分段 " + from + "-" + to + " 只回傳 " + contentRange
+                                + "，請確認 lpi.fetch.partition-rows 不超過 PostgREST 的 max-rows");
+                    }
+                    CRC32C crc = new CRC32C();
+                    T value = handleChecked(response.getBody(), crc, handler);
+                    return new Conditional<>(value, Long.toHexString(crc.getValue()));
+                }));
+    }
+
+    /**
+     * Content-Range（例如 0-24/3573）取斜線後的總數，總數為 * 或格式不符回傳 -1
+     */
+    static long parseTotal(String contentRange) {
+        if (contentRange == null) return -1;
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0) return -1;
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * handler（Jackson）讀完會關閉來源，這裡擋下 close，才能把剩餘內容讀完算進 CRC
+     */
+    private static <T> T handleChecked(InputStream source, CRC32C crc, BodyHandler<T> handler) throws IOException {
+        CheckedInputStream body = new CheckedInputStream(source, crc);
+        T value = handler.handle(new FilterInputStream(body) {
+            @Override
+            public void close() {
+            }
+        });
+        body.transferTo(OutputStream.nullOutputStream());
+        return value;
+    }
+
+    /**
+     * 條件式讀取的結果：handler 回傳值與這次內容的驗證值
+     */
+    public record Conditional<T>(T value, String validator) {}
+
+    /**
+     * 條件式探測的結果：總列數（無法得知時 -1）與這次回應的 ETag / Last-Modified
+     */
+    public record Count(long total, String etag, String lastModified) {}
+
+    private record Validators(String etag, String lastModified) {}
+
+    @FunctionalInterface
+    public interface BodyHandler<T> {
+        T handle(InputStream body) throws IOException;
+    }
+
+    /**
+     * 原樣回傳回應內容（測試連線用）
+     */
+    public String fetchRaw(String apiPath) {
+        return gateway.coalesce("raw " + apiPath, () -> gateway.call(SUPABASE, permit -> {
+            ResponseEntity<String> response = restTemplate.exchange(
+                    supabaseUrl + apiPath, HttpMethod.GET, new HttpEntity<>(authHeaders()), String.class);
+            return response.getBody();
+        }));
+    }
+
+    private HttpHeaders authHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("apikey", supabaseKey);
+        headers.set("Authorization", "Bearer " + supabaseKey);
+        return headers;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.tradex.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 問題 -> PostgREST 路徑的翻譯快取
+ *
+ * 1. LRU 淘汰（LinkedHashMap access-order）+ TTL 過期
+ * 2. Single-flight：同一個問題同時只會有一個 LLM 呼叫，其餘請求等待同一個結果
+ * 3. 命中 / 未命中 / 合併次數統計
+ *
+ * loader 拋出例外時不寫入快取，所有等待者都會收到同一個例外。
+ */
+public class TranslationCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, Entry> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public TranslationCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    public TranslationCache(int maxSize, Duration ttl, LongSupplier nanoClock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > TranslationCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * 取得快取結果，沒有就呼叫 loader（同一個 key 同時只會呼叫一次）
+     */
+    public String get(String question, Function<String, String> loader) {
+        String key = normalize(question);
+
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return join(running);
+        }
+
+        try {
+            // 查快取到登記之間，前一個 loader 可能剛寫入並離開 inFlight，再查一次避免重複呼叫 LLM
+            String loaded = lookup(key);
+            if (loaded != null) {
+                hits.incrementAndGet();
+                mine.complete(loaded);
+                return loaded;
+            }
+
+            misses.incrementAndGet();
+            String value = loader.apply(question);
+            if (value != null) {
+                synchronized (entries) {
+                    entries.put(key, new Entry(value, nanoClock.getAsLong() + ttlNanos));
+                }
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public Map<String, Long> stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Map.of(
+                "size", (long) size,
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "coalesced", coalesced.get());
+    }
+
+    /**
+     * 正規化問題字串：去頭尾空白、轉小寫、連續空白合併成一個
+     */
+    static String normalize(String question) {
+        StringBuilder sb = new StringBuilder(question.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < question.length(); i++) {
+            char c = question.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    private String lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) return null;
+            if (nanoClock.getAsLong() - entry.expiresAt >= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private String join(CompletableFuture<String> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    private record Entry(String value, long expiresAt) {}
+}
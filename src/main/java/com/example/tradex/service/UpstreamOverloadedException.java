@@ -0,0 +1,29 @@
+package com.example.tradex.service;
+
+/**
+ * 上游（Supabase / OpenRouter）的併發上限已滿且排隊也滿或等到逾時：不送出請求，直接快速失敗
+ */
+public class UpstreamOverloadedException extends RuntimeException {
+
+    public static final String USER_MESSAGE = "目前查詢量過大，系統暫時無法處理，請稍後幾秒再試。";
+
+    private final String upstream;
+    private final long retryAfterSeconds;
+
+    public UpstreamOverloadedException(String upstream, String reason, long retryAfterSeconds) {
+        super(upstream + " 過載：" + reason);
+        this.upstream = upstream;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    /**
+     * 建議客戶端等待的秒數（Retry-After）
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,153 @@
+-- countries_lpi 清洗後的物化檢視，供 lpi.query.backend=jdbc 使用
+-- 執行方式：psql "$DATABASE_URL" -f src/main/resources/db/lpi-clean-postgres.sql
+-- 資料變動後呼叫 POST /api/backend/refresh（REFRESH MATERIALIZED VIEW）
+
+-- 0-99 的英文數字詞對照表，與 ScoreParserService 相同
+CREATE TABLE IF NOT EXISTS lpi_number_words (
+    word  text PRIMARY KEY,
+    value int  NOT NULL
+);
+
+INSERT INTO lpi_number_words (word, value)
+SELECT w.word, w.value
+FROM (
+    SELECT u.word, u.value
+    FROM unnest(ARRAY['zero','one','two','three','four','five','six','seven','eight','nine',
+                      'ten','eleven','twelve','thirteen','fourteen','fifteen','sixteen',
+                      'seventeen','eighteen','nineteen']) WITH ORDINALITY AS u(word, ord)
+    CROSS JOIN LATERAL (SELECT (u.ord - 1)::int AS value) v
+    UNION ALL
+    SELECT t.word, t.value
+    FROM unnest(ARRAY['twenty','thirty','forty','fifty','sixty','seventy','eighty','ninety'])
+         WITH ORDINALITY AS t(word, ord)
+    CROSS JOIN LATERAL (SELECT ((t.ord + 1) * 10)::int AS value) v
+    UNION ALL
+    SELECT t.word || sep || u.word, ((t.ord + 1) * 10 + u.ord)::int
+    FROM unnest(ARRAY['twenty','thirty','forty','fifty','sixty','seventy','eighty','ninety'])
+         WITH ORDINALITY AS t(word, ord)
+    CROSS JOIN unnest(ARRAY['one','two','three','four','five','six','seven','eight','nine'])
+         WITH ORDINALITY AS u(word, ord)
+    CROSS JOIN unnest(ARRAY[' ', '-']) AS s(sep)
+) w
+ON CONFLICT (word) DO NOTHING;
+
+-- 分數清洗：純數字直接轉型；"three point six six" -> 3.66；其他回傳 NULL
+-- 會查 lpi_number_words 表，所以是 STABLE 而非 IMMUTABLE（不可用於運算式索引）
+CREATE OR REPLACE FUNCTION lpi_clean_score(raw text) RETURNS double precision
+LANGUAGE plpgsql STABLE AS $$
+DECLARE
+    s          text := lower(btrim(raw));
+    parts      text[];
+    int_part   int;
+    whole      int;
+    dec_digits text := '';
+    w          text;
+    n          int;
+BEGIN
+    IF s IS NULL OR s = '' THEN
+        RETURN NULL;
+    END IF;
+    IF s ~ '^([0-9]+\.?[0-9]*|\.[0-9]+)$' THEN
+        RETURN s::double precision;
+    END IF;
+
+    parts := string_to_array(s, ' point ');
+    IF array_length(parts, 1) <> 2 THEN
+        RETURN NULL;
+    END IF;
+
+    SELECT value INTO int_part FROM lpi_number_words WHERE word = parts[1];
+    IF int_part IS NULL THEN
+        RETURN NULL;
+    END IF;
+
+    -- 小數部分先整段比對（fifteen），否則逐字串接（six six -> 66）
+    SELECT value INTO whole FROM lpi_number_words WHERE word = parts[2];
+    IF whole IS NOT NULL THEN
+        dec_digits := whole::text;
+    ELSE
+        FOREACH w IN ARRAY string_to_array(parts[2], ' ') LOOP
+            SELECT value INTO n FROM lpi_number_words WHERE word = w;
+            IF n IS NOT NULL THEN
+                dec_digits := dec_digits || n::text;
+            END IF;
+        END LOOP;
+    END IF;
+
+    IF dec_digits = '' THEN
+        RETURN NULL;
+    END IF;
+    RETURN (int_part::text || '.' || dec_digits)::double precision;
+END;
+$$;
+
+-- 國名正規化，與 CountryCanonicalizer.normalize 相同：去掉重音後只保留字母與數字並轉大寫
+CREATE OR REPLACE FUNCTION lpi_country_key(raw text) RETURNS text
+LANGUAGE sql IMMUTABLE AS $$
+    SELECT NULLIF(upper(regexp_replace(normalize(raw, NFD), '[^[:alnum:]]', '', 'g')), '')
+$$;
+
+-- 國名別名表（正規化後的 key -> 標準寫法的 key），內容與 CountryCanonicalizer.ALIASES 相同
+CREATE TABLE IF NOT EXISTS lpi_country_aliases (
+    alias_key     text PRIMARY KEY,
+    canonical_key text NOT NULL
+);
+
+INSERT INTO lpi_country_aliases (alias_key, canonical_key)
+SELECT lpi_country_key(a.alias), lpi_country_key(a.canonical)
+FROM (VALUES
+    ('Viet Nam', 'Vietnam'),
+    ('Korea, Rep.', 'South Korea'),
+    ('Korea, Republic of', 'South Korea'),
+    ('Republic of Korea', 'South Korea'),
+    ('Korea, Dem. People''s Rep.', 'North Korea'),
+    ('Democratic People''s Republic of Korea', 'North Korea'),
+    ('Russian Federation', 'Russia'),
+    ('Iran, Islamic Rep.', 'Iran'),
+    ('Islamic Republic of Iran', 'Iran'),
+    ('Egypt, Arab Rep.', 'Egypt'),
+    ('Hong Kong SAR, China', 'Hong Kong'),
+    ('Hong Kong, China', 'Hong Kong'),
+    ('Taiwan, China', 'Taiwan'),
+    ('Chinese Taipei', 'Taiwan'),
+    ('Lao PDR', 'Laos'),
+    ('Lao People''s Democratic Republic', 'Laos'),
+    ('Turkey', 'Turkiye'),
+    ('Czech Republic', 'Czechia'),
+    ('Slovak Republic', 'Slovakia'),
+    ('Kyrgyz Republic', 'Kyrgyzstan'),
+    ('Syrian Arab Republic', 'Syria'),
+    ('Venezuela, RB', 'Venezuela'),
+    ('Yemen, Rep.', 'Yemen'),
+    ('Gambia, The', 'Gambia'),
+    ('The Gambia', 'Gambia'),
+    ('Bahamas, The', 'Bahamas'),
+    ('Congo, Dem. Rep.', 'DR Congo'),
+    ('Democratic Republic of the Congo', 'DR Congo'),
+    ('Congo, Rep.', 'Congo'),
+    ('Republic of the Congo', 'Congo'),
+    ('Ivory Coast', 'Cote d''Ivoire'),
+    ('United States of America', 'United States'),
+    ('USA', 'United States'),
+    ('UK', 'United Kingdom'),
+    ('Macedonia, FYR', 'North Macedonia'),
+    ('Brunei Darussalam', 'Brunei'),
+    ('Micronesia, Fed. Sts.', 'Micronesia')
+) AS a(alias, canonical)
+ON CONFLICT (alias_key) DO UPDATE SET canonical_key = EXCLUDED.canonical_key;
+
+-- 別名表或國名 key 的算法有變時，先 DROP MATERIALIZED VIEW countries_lpi_clean 再執行本檔重建
+CREATE MATERIALIZED VIEW IF NOT EXISTS countries_lpi_clean AS
+SELECT c.id,
+       btrim(c.country)                                             AS country,
+       COALESCE(a.canonical_key, lpi_country_key(c.country))        AS country_key,
+       c.region,
+       upper(btrim(c.region))                                       AS region_key,
+       lpi_clean_score(c.lpi_score::text)                           AS score,
+       c.year
+FROM countries_lpi c
+LEFT JOIN lpi_country_aliases a ON a.alias_key = lpi_country_key(c.country)
+WHERE lpi_clean_score(c.lpi_score::text) IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS countries_lpi_clean_country_idx ON countries_lpi_clean (country_key, score DESC);
+CREATE INDEX IF NOT EXISTS countries_lpi_clean_region_idx ON countries_lpi_clean (region_key);
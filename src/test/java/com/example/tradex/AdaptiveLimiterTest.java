@@ -0,0 +1,157 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.service.AdaptiveLimiter;
+import com.example.tradex.service.OutboundGateway;
+import com.example.tradex.service.UpstreamOverloadedException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+class AdaptiveLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("測試 1：名額與佇列都滿時立刻拒絕，排隊等到逾時也拒絕")
+    void testFastRejection() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 1, 1, 1, 0, 50, 2.0);
+        AdaptiveLimiter.Permit held = limiter.acquire();
+
+        UpstreamOverloadedException full = assertThrows(UpstreamOverloadedException.class, limiter::acquire);
+        assertEquals("test", full.getUpstream());
+        assertTrue(full.getRetryAfterSeconds() > 0);
+
+        AdaptiveLimiter queued = new AdaptiveLimiter("test", 1, 1, 1, 10, 20, 2.0);
+        AdaptiveLimiter.Permit other = queued.acquire();
+        long start = System.nanoTime();
+        assertThrows(UpstreamOverloadedException.class, queued::acquire);
+        assertTrue(System.nanoTime() - start >= 20 * MS, "應該等到佇列逾時才拒絕");
+        assertEquals(0, queued.queued());
+
+        held.close();
+        other.close();
+        assertEquals(1L, limiter.stats().get("rejected").longValue());
+        assertEquals(1L, queued.stats().get("rejected").longValue());
+        limiter.acquire().close();
+    }
+
+    @Test
+    @DisplayName("測試 2：排隊的請求在名額歸還後依序取得名額")
+    void testQueuedAdmission() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 1, 1, 1, 10, 5000, 2.0);
+        AdaptiveLimiter.Permit held = limiter.acquire();
+
+        CountDownLatch waiting = new CountDownLatch(1);
+        CompletableFuture<Integer> next = CompletableFuture.supplyAsync(() -> {
+            waiting.countDown();
+            try (AdaptiveLimiter.Permit permit = limiter.acquire()) {
+                return limiter.inFlight();
+            }
+        });
+        waiting.await();
+        while (limiter.queued() == 0) Thread.onSpinWait();
+
+        held.close();
+        assertEquals(1, next.get(5, TimeUnit.SECONDS));
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    @DisplayName("測試 3：延遲正常且用滿時加大上限，延遲暴增時縮小，上游過載時減半（同一波只減一次）")
+    void testAimd() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 4, 1, 100, 0, 0, 2.0, clock::get);
+
+        // 用滿 4 個名額、延遲 10ms 重複多輪，上限應該慢慢變大
+        for (int round = 0; round < 20; round++) {
+            int n = limiter.limit();
+            AdaptiveLimiter.Permit[] permits = new AdaptiveLimiter.Permit[n];
+            for (int i = 0; i < n; i++) permits[i] = limiter.acquire();
+            clock.addAndGet(10 * MS);
+            for (AdaptiveLimiter.Permit permit : permits) {
+                permit.responded();
+                permit.close();
+            }
+        }
+        int grown = limiter.limit();
+        assertTrue(grown > 4, "上限應該成長，實際為 " + grown);
+
+        // 延遲變成 5 倍：縮小
+        AdaptiveLimiter.Permit slow = limiter.acquire();
+        clock.addAndGet(50 * MS);
+        slow.close();
+        assertTrue(limiter.limit() < grown);
+
+        // 同時失敗的三個請求只減半一次
+        int before = limiter.limit();
+        AdaptiveLimiter.Permit a = limiter.acquire();
+        AdaptiveLimiter.Permit b = limiter.acquire();
+        AdaptiveLimiter.Permit c = limiter.acquire();
+        clock.addAndGet(MS);
+        for (AdaptiveLimiter.Permit permit : new AdaptiveLimiter.Permit[] {a, b, c}) {
+            permit.dropped();
+            permit.close();
+        }
+        assertEquals(Math.max(1, before / 2), limiter.limit(), 1);
+        assertEquals(3L, limiter.stats().get("dropped").longValue());
+
+        // 與負載無關的失敗不調整
+        int steady = limiter.limit();
+        AdaptiveLimiter.Permit bad = limiter.acquire();
+        clock.addAndGet(500 * MS);
+        bad.ignored();
+        bad.close();
+        assertEquals(steady, limiter.limit());
+    }
+
+    @Test
+    @DisplayName("測試 4：相同 key 同時進行的讀取合併為一次，5xx 讓上限減半")
+    void testGatewayCoalesceAndDrop() throws Exception {
+        OutboundGateway gateway = new OutboundGateway(new SimpleMeterRegistry(), 8, 50, 10, 1000, 4, 50, 10, 1000, 2.0);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> gateway.coalesce("rows /x", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "data";
+        }));
+        started.await();
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(
+                () -> gateway.coalesce("rows /x", () -> "other" + calls.incrementAndGet()));
+        while (((Number) gateway.stats().get("coalesced")).intValue() == 0) Thread.onSpinWait();
+        release.countDown();
+
+        assertEquals("data", first.get(5, TimeUnit.SECONDS));
+        assertEquals("data", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+
+        assertThrows(HttpServerErrorException.class, () -> gateway.call(OutboundGateway.Upstream.SUPABASE, permit -> {
+            throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+        }));
+        @SuppressWarnings("unchecked")
+        Map<String, Number> supabase = (Map<String, Number>) gateway.stats().get("supabase");
+        assertEquals(4, supabase.get("limit").intValue());
+        assertEquals(0, supabase.get("inFlight").intValue());
+    }
+}
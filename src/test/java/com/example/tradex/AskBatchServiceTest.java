@@ -0,0 +1,98 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.tradex.query.IntentRouter;
+import com.example.tradex.query.QueryPlan;
+import com.example.tradex.service.AiService;
+import com.example.tradex.service.AskBatchService;
+import com.example.tradex.service.AskMetrics;
+import com.example.tradex.service.LpiQueryBackend;
+import com.example.tradex.service.ScoreParserService;
+import com.example.tradex.service.SupabaseClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+class AskBatchServiceTest {
+
+    private static final String NAMES_PATH = "/rest/v1/countries_lpi?select=country";
+    private static final String BROKEN_PATH = "/rest/v1/countries_lpi?select=region";
+
+    @Spy
+    private IntentRouter intentRouter = new IntentRouter(new ScoreParserService());
+
+    @Spy
+    private AskMetrics askMetrics = new AskMetrics(new SimpleMeterRegistry());
+
+    @Mock
+    private AiService aiService;
+
+    @Mock
+    private SupabaseClient supabaseClient;
+
+    @Mock
+    private LpiQueryBackend lpiQueryBackend;
+
+    @InjectMocks
+    private AskBatchService askBatchService;
+
+    @Test
+    @DisplayName("測試 1：相同計畫只算一次、相同路徑只讀一次，逐題回傳結果")
+    void testSharedWork() {
+        List<Map<String, Object>> top = List.of(Map.of("country", "Singapore", "lpi_score", 4.3));
+        when(lpiQueryBackend.executeAll(List.of(QueryPlan.topN(5)))).thenReturn(List.of(top));
+        when(aiService.translateToSupabasePath(anyString())).thenAnswer(call -> {
+            String question = call.getArgument(0);
+            if (question.contains("name")) return NAMES_PATH;
+            if (question.contains("chile")) return NAMES_PATH;
+            return "Sorry, I can only help with logistics.";
+        });
+        List<Map<String, Object>> names = List.of(Map.of("country", "Chile"));
+        when(supabaseClient.fetchRows(NAMES_PATH)).thenReturn(names);
+
+        List<Map<String, Object>> answers = askBatchService.askAll(List.of(
+                "top 5 countries", "前五名", "list country names", "List  country NAMES", "what about chile", "hello"));
+
+        assertEquals(6, answers.size());
+        assertEquals(top, answers.get(0).get("result"));
+        assertEquals(top, answers.get(1).get("result"));
+        assertEquals(names, answers.get(2).get("result"));
+        assertEquals(names, answers.get(4).get("result"));
+        assertEquals("text", ((Map<?, ?>) answers.get(5).get("result")).get("type"));
+        assertEquals("hello", answers.get(5).get("question"));
+
+        verify(lpiQueryBackend, times(1)).executeAll(anyList());
+        verify(aiService, times(3)).translateToSupabasePath(anyString());   // 兩個 names 問句正規化後相同
+        verify(supabaseClient, times(1)).fetchRows(NAMES_PATH);
+    }
+
+    @Test
+    @DisplayName("測試 2：某個路徑失敗只影響對應的問題")
+    void testPartialFailure() {
+        when(aiService.translateToSupabasePath(anyString()))
+                .thenAnswer(call -> ((String) call.getArgument(0)).contains("broken") ? BROKEN_PATH : NAMES_PATH);
+        when(supabaseClient.fetchRows(NAMES_PATH)).thenReturn(List.of());
+        when(supabaseClient.fetchRows(BROKEN_PATH)).thenThrow(new IllegalStateException("upstream 503"));
+
+        List<Map<String, Object>> answers = askBatchService.askAll(List.of("list names", "broken question"));
+
+        assertEquals(List.of(), answers.get(0).get("result"));
+        assertFalse(answers.get(0).containsKey("error"));
+        assertNotNull(answers.get(1).get("error"));
+        assertFalse(answers.get(1).containsKey("result"));
+    }
+}
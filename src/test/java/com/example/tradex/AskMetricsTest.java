@@ -0,0 +1,77 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.example.tradex.service.AskMetrics;
+import com.example.tradex.service.AskMetrics.Stage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AskMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AskMetrics metrics = new AskMetrics(registry);
+
+    @AfterEach
+    void clearRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @DisplayName("測試 1：各階段寫入 Micrometer，並組成 Server-Timing 標頭")
+    void testServerTiming() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        long start = System.nanoTime();
+
+        assertEquals("ok", metrics.time(Stage.ROUTE, () -> "ok"));
+        metrics.record(Stage.FETCH, 2_000_000);
+        metrics.record(Stage.FETCH, 1_500_000);   // 同一請求內累加
+
+        String header = metrics.serverTiming(start);
+        assertTrue(header.startsWith("route;dur="), header);
+        assertTrue(header.contains("fetch;dur=3.5"), header);
+        assertTrue(header.contains("total;dur="), header);
+
+        assertEquals(2, registry.get("lpi.ask.stage").tag("stage", "fetch").timer().count());
+        assertEquals(1, registry.get("lpi.ask").tag("endpoint", "ask").timer().count());
+    }
+
+    @Test
+    @DisplayName("測試 2：背景工作沒有請求時只寫指標；列數與解析失敗依來源分開")
+    void testWithoutRequest() {
+        metrics.record(Stage.FETCH, 1_000_000);
+        metrics.recordRows("snapshot", 160, 3);
+        metrics.recordRows("snapshot", 160, 0);
+
+        assertEquals("total;dur=0.0", metrics.serverTiming(System.nanoTime()).replaceAll("dur=0\\.\\d", "dur=0.0"));
+        assertEquals(320, registry.get("lpi.rows.fetched").tag("source", "snapshot").summary().totalAmount());
+        assertEquals(3, registry.get("lpi.parse.failures").tag("source", "snapshot").counter().count());
+    }
+
+    @Test
+    @DisplayName("測試 3：背景載入記到 lpi.refresh，批次請求的整體耗時與單題分開")
+    void testRefreshAndBatchSeparated() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        long start = System.nanoTime();
+
+        metrics.refresh("snapshot", () -> {
+            metrics.record(Stage.FETCH, 5_000_000);
+            return null;
+        });
+        metrics.record(Stage.FETCH, 1_000_000);
+        String header = metrics.serverTiming("batch", start);
+
+        assertEquals(1, registry.get("lpi.refresh").tag("source", "snapshot").tag("stage", "fetch").timer().count());
+        assertEquals(1, registry.get("lpi.ask.stage").tag("stage", "fetch").timer().count());
+        assertTrue(header.contains("fetch;dur=1.0"), header);
+        assertEquals(1, registry.get("lpi.ask").tag("endpoint", "batch").timer().count());
+        assertNull(registry.find("lpi.ask").tag("endpoint", "ask").timer());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.tradex.query.IntentRouter;
+import com.example.tradex.query.QueryPlan;
+import com.example.tradex.service.AiService;
+import com.example.tradex.service.AskMetrics;
+import com.example.tradex.service.AskStreamService;
+import com.example.tradex.service.LpiQueryBackend;
+import com.example.tradex.service.ScoreParserService;
+import com.example.tradex.service.SupabaseClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@ExtendWith(MockitoExtension.class)
+class AskStreamServiceTest {
+
+    private static final String NAMES_PATH = "/rest/v1/countries_lpi?select=country,lpi_score";
+
+    @Spy
+    private IntentRouter intentRouter = new IntentRouter(new ScoreParserService());
+
+    @Spy
+    private AskMetrics askMetrics = new AskMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private AiService aiService;
+
+    @Mock
+    private SupabaseClient supabaseClient;
+
+    @Mock
+    private LpiQueryBackend lpiQueryBackend;
+
+    @InjectMocks
+    private AskStreamService askStreamService;
+
+    private static final String PAGE_1 = NAMES_PATH + "&order=id.asc&limit=2";
+    private static final String PAGE_2 = NAMES_PATH + "&order=id.asc&limit=2&offset=2";
+
+    private void respond(String path, String body) {
+        when(supabaseClient.streamTemplate(eq(path), any())).thenAnswer(call ->
+                call.<SupabaseClient.BodyHandler<?>>getArgument(1)
+                        .handle(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    @DisplayName("測試 1：Supabase 分頁讀取，逐列轉寫成 NDJSON，最後一行是 summary")
+    void testNdjsonRows() throws Exception {
+        ReflectionTestUtils.setField(askStreamService, "pageRows", 2);
+        when(aiService.translateToSupabasePath(anyString())).thenReturn(NAMES_PATH);
+        respond(PAGE_1, "[{\"country\":\"Chile\",\"lpi_score\":3.3},{\"country\":\"Peru\",\"lpi_score\":\"2.9\"}]");
+        respond(PAGE_2, "[{\"country\":\"Bolivia\",\"lpi_score\":2.5}]");
+
+        List<JsonNode> events = ndjson(stream("list countries in south america", AskStreamService.Format.NDJSON));
+
+        assertEquals(4, events.size());
+        assertEquals("row", events.get(0).get("type").asText());
+        assertEquals("Chile", events.get(0).get("data").get("country").asText());
+        assertEquals("2.9", events.get(1).get("data").get("lpi_score").asText());
+        assertEquals("Bolivia", events.get(2).get("data").get("country").asText());
+        assertEquals("summary", events.get(3).get("type").asText());
+        assertEquals(3, events.get(3).get("data").get("rows").asLong());
+        verify(supabaseClient, times(2)).streamTemplate(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("測試 2：SSE 格式；區域平均只有 summary，超出範圍回 text")
+    void testSseSummaryAndText() throws Exception {
+        when(lpiQueryBackend.execute(QueryPlan.averageByRegion())).thenReturn(Map.of("EUROPE", 3.5));
+        String averages = stream("各區域平均", AskStreamService.Format.SSE);
+        assertTrue(averages.startsWith("event: summary\ndata: {"));
+        assertTrue(averages.contains("\"averages\":{\"EUROPE\":3.5}"));
+        assertTrue(averages.endsWith("\n\n"));
+
+        when(aiService.translateToSupabasePath(anyString())).thenReturn("Sorry, I can only help with logistics.");
+        String text = stream("hello", AskStreamService.Format.SSE);
+        assertEquals("event: text\ndata: \"" + AiService.OUT_OF_SCOPE_MESSAGE + "\"\n\n", text);
+    }
+
+    @Test
+    @DisplayName("測試 3：上游失敗時以 error 事件結尾")
+    void testUpstreamFailure() throws Exception {
+        when(aiService.translateToSupabasePath(anyString())).thenReturn(NAMES_PATH);
+        when(supabaseClient.streamTemplate(anyString(), any())).thenThrow(new IllegalStateException("upstream 503"));
+
+        List<JsonNode> events = ndjson(stream("list countries", AskStreamService.Format.NDJSON));
+
+        assertEquals(1, events.size());
+        assertEquals("error", events.get(0).get("type").asText());
+    }
+
+    @Test
+    @DisplayName("測試 4：客戶端斷線的寫入錯誤不會發生在上游請求裡")
+    void testClientDisconnectOutsideUpstream() {
+        when(aiService.translateToSupabasePath(anyString())).thenReturn(NAMES_PATH);
+        AtomicBoolean failedInsideUpstream = new AtomicBoolean();
+        when(supabaseClient.streamTemplate(anyString(), any())).thenAnswer(call -> {
+            try {
+                return call.<SupabaseClient.BodyHandler<?>>getArgument(1).handle(new ByteArrayInputStream(
+                        "[{\"country\":\"Chile\"}]".getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                failedInsideUpstream.set(true);
+                throw e;
+            }
+        });
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class,
+                () -> askStreamService.stream("list countries", disconnected, AskStreamService.Format.NDJSON));
+        assertFalse(failedInsideUpstream.get());
+    }
+
+    @Test
+    @DisplayName("測試 5：第二頁失敗時，已送出的列之後以完整的 error 事件結尾")
+    void testFailureAfterRows() throws Exception {
+        ReflectionTestUtils.setField(askStreamService, "pageRows", 2);
+        when(aiService.translateToSupabasePath(anyString())).thenReturn(NAMES_PATH);
+        respond(PAGE_1, "[{\"country\":\"Chile\"},{\"country\":\"Peru\"}]");
+        when(supabaseClient.streamTemplate(eq(PAGE_2), any())).thenThrow(new ResourceAccessException("Read timed out"));
+
+        List<JsonNode> events = ndjson(stream("list countries", AskStreamService.Format.NDJSON));
+
+        assertEquals(List.of("row", "row", "error"), events.stream().map(e -> e.get("type").asText()).toList());
+    }
+
+    private String stream(String question, AskStreamService.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        askStreamService.stream(question, out, format);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private List<JsonNode> ndjson(String body) throws Exception {
+        List<JsonNode> events = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            events.add(objectMapper.readTree(line));
+        }
+        return events;
+    }
+}
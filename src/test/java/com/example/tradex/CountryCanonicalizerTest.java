@@ -0,0 +1,90 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.model.CountryCanonicalizer;
+import com.example.tradex.service.ScoreParserService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+class CountryCanonicalizerTest {
+
+    @Test
+    @DisplayName("測試 1：大小寫、空白、標點、重音與別名對到同一個 id")
+    void testAliases() {
+        CountryCanonicalizer countries = new CountryCanonicalizer();
+
+        int vietnam = countries.idOf("Vietnam");
+        assertEquals(vietnam, countries.idOf("Viet Nam"));
+        assertEquals(vietnam, countries.idOf("  VIET  NAM "));
+        assertEquals("VIETNAM", countries.key(vietnam));
+
+        int korea = countries.idOf("South Korea");
+        assertEquals(korea, countries.idOf("Korea, Rep."));
+        assertEquals(korea, countries.idOf("Republic of Korea"));
+        assertNotEquals(korea, countries.idOf("Korea, Dem. People's Rep."));
+
+        assertEquals(countries.idOf("Cote d'Ivoire"), countries.idOf("Côte d’Ivoire"));
+        assertEquals(countries.idOf("Türkiye"), countries.idOf("Turkey"));
+
+        assertEquals(-1, countries.idOf(null));
+        assertEquals(-1, countries.idOf("  "));
+        assertEquals(-1, countries.idOf("--"));
+        assertEquals(vietnam, countries.idOf("Vietnam"), "同一個原始字串第二次查詢走快取，id 不變");
+    }
+
+    @Test
+    @DisplayName("測試 2：processData 以別名去重，保留最高分那筆的原始國名")
+    void testProcessDataUsesAliases() {
+        List<Map<String, Object>> data = List.of(
+                row("Korea, Rep.", "East Asia", "3.8"),
+                row("South Korea", "East Asia", "3.6"),
+                row("Russian Federation", "Europe", "2.6"),
+                row("Russia", "Europe", "2.8"));
+
+        List<Map<String, Object>> result = new ScoreParserService().processData(data, 0);
+
+        assertEquals(2, result.size());
+        assertEquals("Korea, Rep.", result.get(0).get("country"));
+        assertEquals("Russia", result.get(1).get("country"));
+    }
+
+    @Test
+    @DisplayName("測試 3：jdbc 後端的 lpi_country_aliases 與別名表一致")
+    void testSqlAliasesMatch() throws Exception {
+        String sql;
+        try (InputStream in = getClass().getResourceAsStream("/db/lpi-clean-postgres.sql")) {
+            sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String values = sql.substring(sql.indexOf("INSERT INTO lpi_country_aliases"));
+        values = values.substring(0, values.indexOf("ON CONFLICT"));
+
+        CountryCanonicalizer countries = new CountryCanonicalizer();
+        Matcher pair = Pattern.compile("\\('((?:[^']|'')+)', '((?:[^']|'')+)'\\)").matcher(values);
+        int pairs = 0;
+        while (pair.find()) {
+            String alias = pair.group(1).replace("''", "'");
+            String canonical = pair.group(2).replace("''", "'");
+            assertEquals(countries.idOf(canonical), countries.idOf(alias), alias);
+            pairs++;
+        }
+        assertTrue(pairs >= 30, "SQL 別名數量：" + pairs);
+    }
+
+    private Map<String, Object> row(String country, String region, String score) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("country", country);
+        row.put("region", region);
+        row.put("lpi_score", score);
+        return row;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.query.IntentRouter;
+import com.example.tradex.query.QueryPlan;
+import com.example.tradex.query.QueryPlan.Intent;
+import com.example.tradex.service.ScoreParserService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntentRouterTest {
+
+    private final IntentRouter router = new IntentRouter(new ScoreParserService());
+
+    private QueryPlan route(String question) {
+        return router.route(question).orElseThrow(() -> new AssertionError("無法辨識: " + question));
+    }
+
+    @Test
+    @DisplayName("測試 1：作業要求的三個查詢")
+    void testRequiredQueries() {
+        QueryPlan asia = route("Which countries in Asia have an LPI score above 3.0?");
+        assertEquals(Intent.SCORE_ABOVE, asia.intent());
+        assertEquals(3.0, asia.minScore());
+        assertEquals("Asia", asia.region());
+
+        assertEquals(Intent.AVERAGE_BY_REGION, route("What's the average LPI score by region?").intent());
+
+        QueryPlan top = route("Show me the top 5 countries by logistics performance");
+        assertEquals(Intent.TOP_N, top.intent());
+        assertEquals(5, top.limit());
+    }
+
+    @Test
+    @DisplayName("測試 2：中文問法、文字數字與年份")
+    void testChineseAndYear() {
+        assertEquals(10, route("顯示物流表現前十名的國家").limit());
+        assertEquals(15, route("前十五名").limit());
+        assertEquals(20, route("top twenty countries").limit());
+        assertEquals(21, route("top twenty-one countries").limit());
+
+        QueryPlan asia = route("2023年亞洲高於 3.5 的國家");
+        assertEquals(Intent.SCORE_ABOVE, asia.intent());
+        assertEquals(3.5, asia.minScore());
+        assertEquals("Asia", asia.region());
+        assertEquals(2023, asia.year());
+
+        QueryPlan below = route("Countries in Europe below 3 in 2018");
+        assertEquals(Intent.SCORE_BELOW, below.intent());
+        assertEquals(3.0, below.maxScore());
+        assertEquals("Europe", below.region());
+        assertEquals(2018, below.year());
+    }
+
+    @Test
+    @DisplayName("測試 3：無法辨識時交給 LLM，並統計命中率")
+    void testFallbackAndStats() {
+        assertTrue(router.route("Which country improved the most?").isEmpty());
+        route("前五名");
+
+        assertEquals(1L, router.stats().get("TOP_N"));
+        assertEquals(1L, router.stats().get("LLM_FALLBACK"));
+        assertEquals(0.5, (Double) router.stats().get("hitRate"), 0.0001);
+    }
+
+    @Test
+    @DisplayName("測試 4：前 N 名的 N 有上限，超出 int 範圍交給 LLM")
+    void testHugeTopN() {
+        assertEquals(10_000, route("top 999999999 countries").limit());
+        assertEquals(10_000, route("前 20000 名").limit());
+        assertTrue(router.route("top 99999999999 countries").isEmpty());
+        assertTrue(router.route("top 99999999999 countries above 3").isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試 5：有無法辨識的條件（國名、否定、排除、問定義）時交給 LLM")
+    void testUnrecognisedContentFallsBack() {
+        assertTrue(router.route("What does LPI mean?").isEmpty());
+        assertTrue(router.route("What does average LPI mean?").isEmpty());
+        assertTrue(router.route("Is Germany above 3?").isEmpty());
+        assertTrue(router.route("countries above 3 excluding Europe").isEmpty());
+        assertTrue(router.route("countries not in Asia above 3").isEmpty());
+        assertTrue(router.route("top 5 countries in Asia and Europe").isEmpty());
+        assertTrue(router.route("top five germany").isEmpty());
+        assertTrue(router.route("亞洲以外高於 3 的國家").isEmpty());
+        assertTrue(router.route("德國的分數高於 3 嗎").isEmpty());
+
+        assertEquals(Intent.AVERAGE_BY_REGION, route("各區域平均 LPI 分數是多少？").intent());
+        assertEquals(5, route("顯示物流表現前五名的國家").limit());
+        assertEquals(3.0, route("Which countries have an LPI score of over 3?").minScore());
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.tradex.query.QueryPlan;
+import com.example.tradex.service.JdbcQueryBackend;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 以 H2（PostgreSQL 模式）模擬清洗後的物化檢視，驗證 SQL 聚合結果
+ */
+class JdbcQueryBackendTest {
+
+    private JdbcQueryBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=YEAR;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE countries_lpi_clean (
+                    id INT PRIMARY KEY, country VARCHAR(100), country_key VARCHAR(100),
+                    region VARCHAR(100), region_key VARCHAR(100), score DOUBLE PRECISION, year INT)
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO countries_lpi_clean VALUES
+                (1, 'Singapore', 'SINGAPORE', 'Asia', 'ASIA', 4.3, 2023),
+                (2, 'SINGAPORE', 'SINGAPORE', 'Asia', 'ASIA', 3.0, 2018),
+                (3, 'Viet Nam', 'VIETNAM', 'asia', 'ASIA', 3.25, 2023),
+                (4, 'Vietnam', 'VIETNAM', 'Asia', 'ASIA', 3.27, 2018),
+                (5, 'Germany', 'GERMANY', 'Europe', 'EUROPE', 4.1, 2023),
+                (6, 'Finland', 'FINLAND', 'Europe', 'EUROPE', 4.1, 2023),
+                (7, NULL, NULL, 'Europe', 'EUROPE', 2.0, 2023)
+                """);
+        backend = new JdbcQueryBackend(jdbcTemplate, "");
+    }
+
+    @Test
+    @DisplayName("測試 1：SQL 前 N 名去重與同分並列")
+    void testTopN() {
+        List<Map<String, Object>> result = backend.countries(QueryPlan.topN(2));
+
+        assertEquals(3, result.size(), "第二名 4.1 同分兩國都要保留");
+        assertEquals("Singapore", result.get(0).get("country"));
+        assertEquals("Finland", result.get(1).get("country"), "同分依國家 key 排序");
+        assertEquals("Germany", result.get(2).get("country"));
+    }
+
+    @Test
+    @DisplayName("測試 2：SQL 高於門檻 + 區域過濾")
+    void testAbove() {
+        List<Map<String, Object>> result = backend.countries(QueryPlan.above(3.0, "Asia"));
+
+        assertEquals(2, result.size());
+        assertEquals("Singapore", result.get(0).get("country"));
+        assertEquals(3.27, (Double) result.get(1).get("lpi_score"), 0.001);
+    }
+
+    @Test
+    @DisplayName("測試 3：SQL 區域平均")
+    void testAverageByRegion() {
+        Map<String, Double> result = backend.averageByRegion(QueryPlan.averageByRegion());
+
+        assertEquals((4.3 + 3.0 + 3.25 + 3.27) / 4, result.get("ASIA"), 0.0001);
+        assertEquals((4.1 + 4.1 + 2.0) / 3, result.get("EUROPE"), 0.0001);
+    }
+
+    @Test
+    @DisplayName("測試 4：年份與分數上限條件")
+    void testYearAndBelow() {
+        QueryPlan plan = new QueryPlan(QueryPlan.Intent.SCORE_BELOW, 0, null, 4.0, null, 2023);
+        List<Map<String, Object>> result = backend.countries(plan);
+
+        assertEquals(1, result.size(), "2023 年低於 4.0 的只有 Viet Nam");
+        assertEquals("Viet Nam", result.get(0).get("country"));
+    }
+}
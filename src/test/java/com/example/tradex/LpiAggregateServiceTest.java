@@ -0,0 +1,87 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.tradex.service.AskMetrics;
+import com.example.tradex.service.DatasetVersion;
+import com.example.tradex.service.LpiAggregateService;
+import com.example.tradex.service.LpiRowDecoder;
+import com.example.tradex.service.PartitionedFetcher;
+import com.example.tradex.service.SupabaseClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+class LpiAggregateServiceTest {
+
+    @Mock
+    private SupabaseClient supabaseClient;
+
+    @Mock
+    private LpiRowDecoder lpiRowDecoder;
+
+    @Mock
+    private PartitionedFetcher partitionedFetcher;
+
+    @Mock
+    private DatasetVersion datasetVersion;
+
+    @Spy
+    private AskMetrics askMetrics = new AskMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private LpiAggregateService service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "changedColumn", "");
+        ReflectionTestUtils.setField(service, "pollIntervalMs", 15_000L);
+        ReflectionTestUtils.setField(service, "retryMaxMs", 40_000L);
+    }
+
+    @Test
+    @DisplayName("測試 1：初次載入失敗時輪詢不再每次讀整張表，間隔加倍且有上限，成功後正常輪詢")
+    void testInitialLoadBacksOff() {
+        when(partitionedFetcher.feedIfModified(anyString(), any(), any()))
+                .thenThrow(new ResourceAccessException("Connection refused"))
+                .thenThrow(new ResourceAccessException("Connection refused"))
+                .thenReturn(Optional.of(new SupabaseClient.Conditional<>(LpiRowDecoder.Result.EMPTY, "v1")));
+
+        long start = System.nanoTime();
+        service.poll();
+        service.poll();
+        service.poll();
+        verify(partitionedFetcher, times(1)).feedIfModified(anyString(), any(), any());
+        long first = (long) ReflectionTestUtils.getField(service, "retryAt");
+        assertTrue(first - start >= 30_000_000_000L && first - start < 31_000_000_000L, "第一次失敗後等 30 秒");
+
+        ReflectionTestUtils.setField(service, "retryAt", System.nanoTime() - 1);
+        long before = System.nanoTime();
+        service.poll();
+        verify(partitionedFetcher, times(2)).feedIfModified(anyString(), any(), any());
+        long second = (long) ReflectionTestUtils.getField(service, "retryAt");
+        assertTrue(second - before >= 40_000_000_000L && second - before < 41_000_000_000L, "60 秒被上限截成 40 秒");
+
+        ReflectionTestUtils.setField(service, "retryAt", System.nanoTime() - 1);
+        service.poll();
+        assertTrue(service.current().isPresent());
+        assertEquals(0, ReflectionTestUtils.getField(service, "loadFailures"));
+        verify(datasetVersion).observe("aggregates", "v1");
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.service.LpiRowDecoder;
+import com.example.tradex.service.ScoreParserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+class LpiRowDecoderTest {
+
+    private final LpiRowDecoder decoder = new LpiRowDecoder(new ObjectMapper(), new ScoreParserService());
+
+    @Test
+    @DisplayName("測試 1：串流解碼髒資料並寫入快照")
+    void testDecodeDirtyRows() throws Exception {
+        String json = """
+                [
+                  {"id": 1, "country": "Singapore", "region": "Asia", "lpi_score": "4.3", "year": 2023},
+                  {"id": 2, "country": "SINGAPORE", "region": "Asia", "lpi_score": 3.0, "year": "2018"},
+                  {"id": 3, "country": "Viet Nam", "region": "Asia", "lpi_score": "three point two seven", "tags": ["x"]},
+                  {"id": 4, "country": "Nowhere", "region": null, "lpi_score": "N/A"},
+                  {"id": 5, "country": null, "region": "Europe", "lpi_score": 2.5, "extra": {"a": 1}}
+                ]
+                """;
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        LpiRowDecoder.Result result = decoder.decode(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), builder, row -> true);
+
+        assertEquals(5, result.rows());
+        assertEquals(1, result.parseFailures());
+        assertEquals(4, result.kept());
+
+        LpiSnapshot snapshot = builder.build();
+        List<Map<String, Object>> top = snapshot.topN(5);
+        assertEquals(2, top.size(), "Singapore 去重後剩一筆，沒有國名的列不參與排名");
+        assertEquals(4.3, (Double) top.get(0).get("lpi_score"), 0.001);
+        assertEquals(3.27, (Double) top.get(1).get("lpi_score"), 0.001);
+        assertEquals(2.5, snapshot.averageByRegion().get("EUROPE"), 0.001);
+    }
+
+    @Test
+    @DisplayName("測試 2：讀取時就套用過濾條件")
+    void testFilterWhileDecoding() throws Exception {
+        String json = """
+                [{"country": "A", "region": "Asia", "lpi_score": "3.5"},
+                 {"country": "B", "region": "Asia", "lpi_score": "2.5"}]
+                """;
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        LpiRowDecoder.Result result = decoder.decode(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), builder, row -> row.score() > 3.0);
+
+        assertEquals(1, result.kept());
+        assertEquals(1, builder.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.model.LpiSnapshotFile;
+import com.example.tradex.query.QueryPlan;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+class LpiSnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    private LpiSnapshot createSnapshot() {
+        return new LpiSnapshot.Builder()
+                .add("Singapore", "Asia", 4.3, 2023)
+                .add("Viet Nam", "asia", 3.25, 2023)
+                .add("Vietnam", "Asia", 3.27, 2018)
+                .add(" Türkiye ", "Europe", 3.4, 0)
+                .add("Germany", "Europe", 4.1, 2023)
+                .add(null, null, 2.0, 2023)
+                .build();
+    }
+
+    @Test
+    @DisplayName("測試 1：寫入後讀回的快照查詢結果完全相同，並保留驗證值")
+    void testRoundTrip() throws IOException {
+        LpiSnapshot original = createSnapshot();
+        Path file = dir.resolve("lpi-snapshot.bin");
+        LpiSnapshotFile.write(file, original, "\"etag-1\"");
+
+        LpiSnapshotFile.Loaded loaded = LpiSnapshotFile.read(file);
+        LpiSnapshot copy = loaded.snapshot();
+        assertEquals("\"etag-1\"", loaded.validator());
+        assertEquals(original.size(), copy.size());
+        assertEquals(original.rows(), copy.rows());
+        assertEquals(original.topN(0), copy.topN(0));
+        assertEquals(original.averageByRegion(), copy.averageByRegion());
+        assertEquals(original.countries(QueryPlan.above(3.0, "asia")), copy.countries(QueryPlan.above(3.0, "asia")));
+    }
+
+    @Test
+    @DisplayName("測試 2：重寫以 rename 取代舊檔且不留暫存檔，損毀或截斷的檔案拒絕載入")
+    void testReplaceAndCorruption() throws IOException {
+        Path file = dir.resolve("lpi-snapshot.bin");
+        LpiSnapshotFile.write(file, createSnapshot(), "v1");
+        LpiSnapshotFile.write(file, new LpiSnapshot.Builder().add("Japan", "Asia", 3.9, 2023).build(), "v2");
+
+        LpiSnapshotFile.Loaded loaded = LpiSnapshotFile.read(file);
+        assertEquals("v2", loaded.validator());
+        assertEquals(List.of("Japan"), loaded.snapshot().topN(0).stream().map(row -> row.get("country")).toList());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(file), files.toList());
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 3] ^= 0x7F;
+        Path corrupted = dir.resolve("corrupted.bin");
+        Files.write(corrupted, bytes);
+        assertThrows(IOException.class, () -> LpiSnapshotFile.read(corrupted));
+
+        Path truncated = dir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, 20));
+        assertThrows(IOException.class, () -> LpiSnapshotFile.read(truncated));
+    }
+}
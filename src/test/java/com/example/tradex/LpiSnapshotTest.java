@@ -0,0 +1,108 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.query.QueryPlan;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class LpiSnapshotTest {
+
+    private LpiSnapshot createSnapshot() {
+        return new LpiSnapshot.Builder()
+                .add("Singapore", "Asia", 4.3, 2023)
+                .add("SINGAPORE", "Asia", 3.0, 2018)   // 低分重複
+                .add("Viet Nam", "asia", 3.25, 2023)
+                .add("Vietnam", "Asia", 3.27, 2018)    // 空格去重
+                .add("Germany", "Europe", 4.1, 2023)
+                .add("Finland", "Europe", 4.1, 2023)   // 與 Germany 同分
+                .add(null, "Europe", 2.0, 2023)        // 沒有國名只算平均
+                .build();
+    }
+
+    @Test
+    @DisplayName("測試 1：前 N 名去重、排序與同分保留")
+    void testTopN() {
+        List<Map<String, Object>> result = createSnapshot().topN(2);
+
+        // 第二名 4.1 同分兩國都要保留
+        assertEquals(3, result.size());
+        assertEquals("Singapore", result.get(0).get("country"));
+        assertEquals(4.3, (Double) result.get(0).get("lpi_score"), 0.001);
+        assertEquals(4.1, (Double) result.get(2).get("lpi_score"), 0.001);
+    }
+
+    @Test
+    @DisplayName("測試 2：高於門檻 + 區域過濾")
+    void testAbove() {
+        List<Map<String, Object>> result = createSnapshot().above(3.0, "Asia");
+
+        assertEquals(2, result.size(), "Singapore 與 Vietnam 各一筆");
+        assertEquals("Singapore", result.get(0).get("country"));
+        assertEquals("Vietnam", result.get(1).get("country"));
+    }
+
+    @Test
+    @DisplayName("測試 3：區域平均（區域大小寫統一）")
+    void testAverageByRegion() {
+        Map<String, Double> result = createSnapshot().averageByRegion();
+
+        assertEquals((4.3 + 3.0 + 3.25 + 3.27) / 4, result.get("ASIA"), 0.0001);
+        assertEquals((4.1 + 4.1 + 2.0) / 3, result.get("EUROPE"), 0.0001);
+    }
+
+    @Test
+    @DisplayName("測試 4：一次掃描回答多個計畫，結果與逐一查詢相同")
+    void testExecuteAll() {
+        LpiSnapshot snapshot = createSnapshot();
+        List<QueryPlan> plans = List.of(
+                QueryPlan.topN(2),
+                QueryPlan.averageByRegion(),
+                QueryPlan.above(3.0, "Asia"),
+                new QueryPlan(QueryPlan.Intent.SCORE_BELOW, 0, null, 4.2, null, 2023));
+
+        List<Object> results = snapshot.executeAll(plans);
+
+        assertEquals(snapshot.topN(2), results.get(0));
+        assertEquals(snapshot.averageByRegion(), results.get(1));
+        assertEquals(snapshot.above(3.0, "Asia"), results.get(2));
+        assertEquals(snapshot.countries(plans.get(3)), results.get(3));
+        assertEquals(List.of("Finland", "Germany", "Viet Nam"),
+                ((List<?>) results.get(3)).stream().map(m -> ((Map<?, ?>) m).get("country")).toList());
+    }
+
+    @Test
+    @DisplayName("測試 5：大量資料在 ForkJoinPool 上分區塊掃描，結果與循序完全相同")
+    void testParallelExecuteAll() {
+        String[] countries = {"Singapore", "SINGAPORE", "Viet Nam", "Vietnam", "Germany", "Finland", "Chile", null};
+        String[] regions = {"Asia", "asia ", "Europe", "Latin America", null};
+        double[] scores = {4.1, 4.10, 3.6, 3.25, 2.5, 4.3};
+        Random random = new Random(7);
+
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        for (int i = 0; i < 50_000; i++) {
+            builder.add(countries[random.nextInt(countries.length)], regions[random.nextInt(regions.length)],
+                    scores[random.nextInt(scores.length)], 2016 + random.nextInt(8));
+        }
+        LpiSnapshot snapshot = builder.build();
+        List<QueryPlan> plans = List.of(
+                QueryPlan.topN(3),
+                QueryPlan.averageByRegion(),
+                QueryPlan.above(3.0, "asia"),
+                new QueryPlan(QueryPlan.Intent.AVERAGE_BY_REGION, 0, null, null, null, 2020));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(snapshot.executeAll(plans), snapshot.executeAll(plans, pool, 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.service.AskMetrics;
+import com.example.tradex.service.LpiRowDecoder;
+import com.example.tradex.service.PartitionedFetcher;
+import com.example.tradex.service.ScoreParserService;
+import com.example.tradex.service.SupabaseClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionedFetcherTest {
+
+    private static final String PATH = "/rest/v1/countries_lpi?select=country,region,lpi_score,year";
+    private static final String[] COUNTRIES = {"Singapore", "Germany", "Chile", "Kenya"};
+
+    @Mock
+    private SupabaseClient supabaseClient;
+
+    private PartitionedFetcher fetcher(int partitionRows) {
+        return new PartitionedFetcher(supabaseClient, new LpiRowDecoder(new ObjectMapper(), new ScoreParserService()),
+                new AskMetrics(new SimpleMeterRegistry()), partitionRows, 2);
+    }
+
+    /**
+     * 第 from ~ to 列（id 從 1 起算），分數隨 id 遞增，每 100 列有一筆無法解析的分數
+     */
+    private static String rows(long from, long to) {
+        StringBuilder json = new StringBuilder("[");
+        for (long i = from; i <= to; i++) {
+            long id = i + 1;
+            if (i > from) json.append(',');
+            String score = id % 100 == 0 ? "\"N/A\"" : "\"" + (1 + id / 10000.0) + "\"";
+            json.append("{\"country\":\"").append(COUNTRIES[(int) (id % COUNTRIES.length)])
+                    .append("\",\"region\":\"").append(id % 2 == 0 ? "Asia" : "Europe")
+                    .append("\",\"lpi_score\":").append(score).append(",\"year\":2023}");
+        }
+        return json.append(']').toString();
+    }
+
+    @Test
+    @DisplayName("測試 1：超過分段門檻時依 id 排序切成 Range 分段，依序合併並累計解碼統計")
+    void testPartitionedRows() throws Exception {
+        when(supabaseClient.countIfModified(PATH)).thenReturn(Optional.of(new SupabaseClient.Count(2500, null, null)));
+        when(supabaseClient.streamRange(eq(PATH + "&order=id.asc"), anyLong(), anyLong(), any())).thenAnswer(call -> {
+            long from = call.getArgument(1);
+            long to = call.getArgument(2);
+            SupabaseClient.BodyHandler<?> handler = call.getArgument(3);
+            Object value = handler.handle(new ByteArrayInputStream(rows(from, to).getBytes(StandardCharsets.UTF_8)));
+            return new SupabaseClient.Conditional<>(value, from + "-" + to);
+        });
+
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> fetched =
+                fetcher(1000).rowsIfModified(PATH, builder, row -> true);
+
+        verify(supabaseClient).streamRange(eq(PATH + "&order=id.asc"), eq(0L), eq(999L), any());
+        verify(supabaseClient).streamRange(eq(PATH + "&order=id.asc"), eq(1000L), eq(1999L), any());
+        verify(supabaseClient).streamRange(eq(PATH + "&order=id.asc"), eq(2000L), eq(2499L), any());
+        verify(supabaseClient, never()).streamIfModified(anyString(), any());
+
+        assertTrue(fetched.isPresent());
+        assertEquals(new LpiRowDecoder.Result(2500, 25, 2475), fetched.get().value());
+        assertFalse(fetched.get().validator().isEmpty());
+
+        List<Map<String, Object>> snapshot = builder.build().rows();
+        assertEquals(2475, snapshot.size());
+        for (int i = 1; i < snapshot.size(); i++) {
+            assertTrue((double) snapshot.get(i).get("lpi_score") > (double) snapshot.get(i - 1).get("lpi_score"),
+                    "合併後仍依 id 順序");
+        }
+        assertEquals("Germany", snapshot.get(0).get("country"));
+        assertEquals("Europe", snapshot.get(0).get("region"));
+    }
+
+    @Test
+    @DisplayName("測試 2：列數不多時維持單一條件式請求，未變更（304）回傳 empty")
+    void testSmallTableUsesSingleConditionalRequest() {
+        when(supabaseClient.countIfModified(PATH)).thenReturn(Optional.of(new SupabaseClient.Count(10, null, null)));
+        when(supabaseClient.streamIfModified(eq(PATH), any())).thenReturn(Optional.empty());
+
+        Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> fetched =
+                fetcher(1000).rowsIfModified(PATH, new LpiSnapshot.Builder(), row -> true);
+
+        assertTrue(fetched.isEmpty());
+        verify(supabaseClient, never()).streamRange(anyString(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("測試 3：任一分段失敗時整批失敗，不回傳部分資料")
+    void testPartitionFailure() {
+        when(supabaseClient.count(PATH)).thenReturn(3000L);
+        when(supabaseClient.streamRange(anyString(), anyLong(), anyLong(), any())).thenAnswer(call -> {
+            long from = call.getArgument(1);
+            if (from == 1000) throw new ResourceAccessException("Read timed out");
+            SupabaseClient.BodyHandler<?> handler = call.getArgument(3);
+            Object value = handler.handle(new ByteArrayInputStream(
+                    rows(from, (long) call.getArgument(2)).getBytes(StandardCharsets.UTF_8)));
+            return new SupabaseClient.Conditional<>(value, "ok");
+        });
+
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        assertThrows(ResourceAccessException.class, () -> fetcher(1000).rows(PATH, builder, row -> true));
+    }
+
+    @Test
+    @DisplayName("測試 4：上次列數不多時不再探測總數，直接送條件式請求")
+    void testSmallTableSkipsProbe() {
+        when(supabaseClient.countIfModified(PATH)).thenReturn(Optional.of(new SupabaseClient.Count(10, null, null)));
+        when(supabaseClient.streamIfModified(eq(PATH), any())).thenAnswer(call -> {
+            SupabaseClient.BodyHandler<?> handler = call.getArgument(1);
+            handler.handle(new ByteArrayInputStream(rows(0, 9).getBytes(StandardCharsets.UTF_8)));
+            return Optional.of(new SupabaseClient.Conditional<>(null, "crc"));
+        }).thenReturn(Optional.empty());
+
+        PartitionedFetcher fetcher = fetcher(1000);
+        assertTrue(fetcher.rowsIfModified(PATH, new LpiSnapshot.Builder(), row -> true).isPresent());
+        assertTrue(fetcher.rowsIfModified(PATH, new LpiSnapshot.Builder(), row -> true).isEmpty());
+        assertTrue(fetcher.rowsIfModified(PATH, new LpiSnapshot.Builder(), row -> true).isEmpty());
+
+        verify(supabaseClient, times(1)).countIfModified(PATH);
+        verify(supabaseClient, times(3)).streamIfModified(eq(PATH), any());
+    }
+
+    @Test
+    @DisplayName("測試 5：需要分段的表先送條件式 HEAD，未變更（304）時不讀任何分段")
+    void testLargeTableConditionalProbe() throws Exception {
+        SupabaseClient.Count probed = new SupabaseClient.Count(2500, "\"v1\"", null);
+        when(supabaseClient.countIfModified(PATH)).thenReturn(Optional.of(probed)).thenReturn(Optional.empty());
+        when(supabaseClient.streamRange(anyString(), anyLong(), anyLong(), any())).thenAnswer(call -> {
+            SupabaseClient.BodyHandler<?> handler = call.getArgument(3);
+            Object value = handler.handle(new ByteArrayInputStream(
+                    rows(call.getArgument(1), (long) call.getArgument(2)).getBytes(StandardCharsets.UTF_8)));
+            return new SupabaseClient.Conditional<>(value, "ok");
+        });
+
+        PartitionedFetcher fetcher = fetcher(1000);
+        Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> fetched =
+                fetcher.rowsIfModified(PATH, new LpiSnapshot.Builder(), row -> true);
+        assertEquals("\"v1\"", fetched.orElseThrow().validator(), "HEAD 有 ETag 時以它作為驗證值");
+        verify(supabaseClient).remember(PATH, probed);
+
+        assertTrue(fetcher.rowsIfModified(PATH, new LpiSnapshot.Builder(), row -> true).isEmpty());
+        verify(supabaseClient, times(2)).countIfModified(PATH);
+        verify(supabaseClient, times(3)).streamRange(anyString(), anyLong(), anyLong(), any());
+        verify(supabaseClient, never()).streamIfModified(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("測試 6：分段被上游截斷（max-rows）時整批失敗，不當成完整資料")
+    void testTruncatedPartition() {
+        when(supabaseClient.count(PATH)).thenReturn(2500L);
+        when(supabaseClient.streamRange(anyString(), anyLong(), anyLong(), any())).thenAnswer(call -> {
+            long from = call.getArgument(1);
+            // 模擬 max-rows = 600：每段最多只回 600 列
+            long to = Math.min(call.getArgument(2), from + 599);
+            SupabaseClient.BodyHandler<?> handler = call.getArgument(3);
+            Object value = handler.handle(new ByteArrayInputStream(rows(from, to).getBytes(StandardCharsets.UTF_8)));
+            return new SupabaseClient.Conditional<>(value, "ok");
+        });
+
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> fetcher(1000).rows(PATH, builder, row -> true));
+        assertTrue(e.getMessage().contains("預期 1000 列"), e.getMessage());
+        assertEquals(0, builder.size());
+    }
+
+    @Test
+    @DisplayName("測試 7：以快照檔的驗證值預先填入，重啟後第一次刷新只送一次條件式請求")
+    void testSeedFromPersistedValidator() throws Exception {
+        when(supabaseClient.countIfModified(PATH)).thenReturn(Optional.empty());
+        when(supabaseClient.streamIfModified(eq(PATH), any())).thenReturn(Optional.empty());
+
+        // 需要分段的表：帶 ETag 送 HEAD，304 時不讀任何內容
+        PartitionedFetcher large = fetcher(1000);
+        large.seed(PATH, "\"v1\"", 2500);
+        verify(supabaseClient).remember(PATH, new SupabaseClient.Count(2500, "\"v1\"", null));
+        assertTrue(large.rowsIfModified(PATH, new LpiSnapshot.Builder(), row -> true).isEmpty());
+        verify(supabaseClient).countIfModified(PATH);
+
+        // 列數不多的表：不再探測總數，直接送條件式 GET
+        PartitionedFetcher small = fetcher(1000);
+        small.seed(PATH, "W/\"v2\"", 300);
+        assertTrue(small.rowsIfModified(PATH, new LpiSnapshot.Builder(), row -> true).isEmpty());
+        verify(supabaseClient).remember(PATH, new SupabaseClient.Count(300, "W/\"v2\"", null));
+        verify(supabaseClient, times(1)).countIfModified(PATH);
+        verify(supabaseClient).streamIfModified(eq(PATH), any());
+
+        // 內容 CRC32C 不是上游的 ETag，不能拿來送條件式請求
+        fetcher(1000).seed(PATH, "1a2b3c4d", 300);
+        verify(supabaseClient, times(2)).remember(eq(PATH), any());
+        verify(supabaseClient, never()).streamRange(anyString(), anyLong(), anyLong(), any());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.query.PostgrestQuery;
+import com.example.tradex.service.ScoreParserService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class PostgrestQueryTest {
+
+    private final ScoreParserService scoreParserService = new ScoreParserService();
+
+    @Test
+    @DisplayName("測試 1：解析 LLM 常見路徑並重組成標準路徑")
+    void testParse() {
+        PostgrestQuery query = PostgrestQuery.parse(
+                " `/rest/v1/countries_lpi?region=ilike.*Asia*&lpi_score=gt.3.0&order=lpi_score.desc&limit=50` ");
+
+        assertEquals(List.of("id", "country", "region", "lpi_score", "year"), query.select());
+        assertEquals(2, query.filters().size());
+        assertEquals(new PostgrestQuery.Filter("region", "ilike", false, "*Asia*"), query.filters().get(0));
+        assertEquals(50, query.limit());
+        assertEquals("/rest/v1/countries_lpi?select=*&region=ilike.*Asia*&lpi_score=gt.3.0&order=lpi_score.desc&limit=50",
+                query.toPath());
+
+        PostgrestQuery encoded = PostgrestQuery.parse(
+                "/rest/v1/countries_lpi?select=country,%20region&region=ilike.%2ALatin%20America%2A&year=not.in.(2016,2018)");
+        assertEquals("/rest/v1/countries_lpi?select=country,region&region=ilike.*Latin America*&year=not.in.(2016,2018)",
+                encoded.toPath());
+        assertEquals(encoded, PostgrestQuery.parse(encoded.toPath()));
+    }
+
+    @Test
+    @DisplayName("測試 2：不支援或可疑的路徑在送出前就拒絕")
+    void testRejects() {
+        String[] rejected = {
+                null,
+                "Sorry, I can only help with logistics.",
+                "/rest/v1/users?select=*",
+                "/rest/v1/countries_lpi/../users",
+                "/rest/v1/countries_lpi?select=password",
+                "/rest/v1/countries_lpi?select=country:region",
+                "/rest/v1/countries_lpi?select=*,users(*)",
+                "/rest/v1/countries_lpi?or=(lpi_score.gt.3,region.eq.Asia)",
+                "/rest/v1/countries_lpi?lpi_score=gt.abc",
+                "/rest/v1/countries_lpi?lpi_score=ilike.*3*",
+                "/rest/v1/countries_lpi?region=fts.asia",
+                "/rest/v1/countries_lpi?region=eq.Asia%26apikey=x",
+                "/rest/v1/countries_lpi?region=eq.Asia%23",
+                "/rest/v1/countries_lpi?region=eq.%ZZ",
+                "/rest/v1/countries_lpi?limit=-1",
+                "/rest/v1/countries_lpi?limit=1000000",
+                "/rest/v1/countries_lpi?limit=5&limit=6",
+                "/rest/v1/countries_lpi?order=lpi_score.random",
+                "/rest/v1/countries_lpi?region=is.true",
+                "/rest/v1/countries_lpi?region=eq.Asia\r\nX-Injected: 1",
+        };
+        for (String path : rejected) {
+            assertThrows(IllegalArgumentException.class, () -> PostgrestQuery.parse(path), String.valueOf(path));
+        }
+    }
+
+    @Test
+    @DisplayName("測試 3：本地執行：ilike、分數清洗、排序（null 位置）、offset / limit 與投影")
+    void testEvaluate() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(row("Singapore", "East Asia & Pacific", "4.3", 2023));
+        rows.add(row("Japan", "East Asia & Pacific", "three point nine", 2023));
+        rows.add(row("Chile", "Latin America", "3.3", 2023));
+        rows.add(row("Laos", "east asia & pacific", "N/A", 2023));
+        rows.add(row("Vietnam", "East Asia & Pacific", 3.3, 2018));
+        rows.add(row("Nowhere", null, "2.0", null));
+
+        PostgrestQuery.Compiled asia = PostgrestQuery.parse(
+                "/rest/v1/countries_lpi?select=country,lpi_score&region=ilike.*asia*&lpi_score=gt.3.0&order=lpi_score.desc")
+                .compile(scoreParserService::parseScore);
+        List<Map<String, Object>> result = asia.evaluate(rows);
+        assertEquals(List.of(
+                Map.of("country", "Singapore", "lpi_score", 4.3),
+                Map.of("country", "Japan", "lpi_score", 3.9),
+                Map.of("country", "Vietnam", "lpi_score", 3.3)), result);
+
+        // 分數無法解析視同 null：desc 預設 null 在前，nullslast 改到最後；同分維持原順序
+        List<Map<String, Object>> ordered = PostgrestQuery.parse(
+                "/rest/v1/countries_lpi?select=country&order=lpi_score.desc.nullslast,country.asc&offset=1&limit=3")
+                .compile(scoreParserService::parseScore).evaluate(rows);
+        assertEquals(List.of(Map.of("country", "Japan"), Map.of("country", "Chile"), Map.of("country", "Vietnam")), ordered);
+
+        List<Map<String, Object>> noRegion = PostgrestQuery.parse(
+                "/rest/v1/countries_lpi?select=country&region=is.null")
+                .compile(scoreParserService::parseScore).evaluate(rows);
+        assertEquals(List.of(Map.of("country", "Nowhere")), noRegion);
+
+        // not. 遇到 null 仍不成立；in 比對數值欄位
+        List<Map<String, Object>> notIn = PostgrestQuery.parse(
+                "/rest/v1/countries_lpi?select=country&year=not.in.(2023)")
+                .compile(scoreParserService::parseScore).evaluate(rows);
+        assertEquals(List.of(Map.of("country", "Vietnam")), notIn);
+    }
+
+    private Map<String, Object> row(String country, String region, Object score, Integer year) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("country", country);
+        row.put("region", region);
+        row.put("lpi_score", score);
+        row.put("year", year);
+        return row;
+    }
+}
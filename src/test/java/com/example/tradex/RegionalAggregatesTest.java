@@ -0,0 +1,97 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.model.RegionalAggregates;
+import com.example.tradex.model.RegionalAggregates.Update;
+import com.example.tradex.query.QueryPlan;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+class RegionalAggregatesTest {
+
+    private List<Update> sampleRows() {
+        return List.of(
+                new Update(1, "Singapore", "Asia", 4.3, 2023),
+                new Update(2, "SINGAPORE", "Asia", 3.0, 2018),
+                new Update(3, "Viet Nam", "asia", 3.25, 2023),
+                new Update(4, "Germany", "Europe", 4.1, 2023),
+                new Update(5, "Finland", "Europe", 4.1, 2023),
+                new Update(6, null, "Europe", 2.0, 2023));
+    }
+
+    @Test
+    @DisplayName("測試 1：結果與快照逐列計算一致")
+    void testMatchesSnapshot() {
+        Random random = new Random(42);
+        String[] countries = {"Singapore", "Germany", "Viet Nam", "Vietnam", "Chile", " Peru ", null};
+        String[] regions = {"Asia", "asia ", "Europe", "Latin America", null};
+
+        List<Update> rows = new ArrayList<>();
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        for (int i = 0; i < 500; i++) {
+            Update row = new Update(i, countries[random.nextInt(countries.length)],
+                    regions[random.nextInt(regions.length)], random.nextInt(40) / 10.0 + 1, 2010 + random.nextInt(4));
+            rows.add(row);
+            builder.add(row.country(), row.region(), row.score(), row.year());
+        }
+        RegionalAggregates aggregates = new RegionalAggregates();
+        aggregates.apply(rows);
+        LpiSnapshot snapshot = builder.build();
+
+        assertEquals(snapshot.averageByRegion(), aggregates.averageByRegion(null, null));
+        assertEquals(snapshot.averageByRegion(new QueryPlan(QueryPlan.Intent.AVERAGE_BY_REGION, 0, null, null, "asia", 2012)),
+                aggregates.averageByRegion("asia", 2012));
+        assertEquals(snapshot.topN(3), aggregates.countries(3, null));
+        assertEquals(snapshot.above(3.5, null), aggregates.countries(0, 3.5));
+    }
+
+    @Test
+    @DisplayName("測試 2：修改與刪除只調整受影響的彙總（含 min / max 與各國最高分）")
+    void testIncrementalUpdates() {
+        RegionalAggregates aggregates = new RegionalAggregates();
+        aggregates.apply(sampleRows());
+
+        RegionalAggregates.Stats asia = aggregates.statsByRegion("asia", null).get("ASIA");
+        assertEquals(3, asia.count());
+        assertEquals(4.3, asia.max());
+
+        // Singapore 最高分那筆被改低：區域最大值與國家排名都要跟著變
+        aggregates.apply(List.of(new Update(1, "Singapore", "Asia", 2.5, 2023)));
+        asia = aggregates.statsByRegion("asia", null).get("ASIA");
+        assertEquals(3.25, asia.max());
+        assertEquals(2.5, asia.min());
+        assertEquals((2.5 + 3.0 + 3.25) / 3, asia.average(), 0.0001);
+        assertEquals("Finland", aggregates.countries(1, null).get(0).get("country"), "同分依國家 key 排序");
+        assertEquals(3.0, aggregates.countries(0, null).stream()
+                .filter(c -> c.get("country").equals("SINGAPORE")).findFirst().orElseThrow().get("lpi_score"));
+
+        // 分數無法解析視同刪除，刪除後 Europe 只剩沒有國名的那筆
+        aggregates.apply(List.of(new Update(4, "Germany", "Europe", Double.NaN, 2023)));
+        aggregates.remove(Set.of(5L));
+        assertEquals(Map.of("EUROPE", 2.0), aggregates.averageByRegion("europe", null));
+        assertEquals(2, aggregates.countries(0, null).size());
+    }
+
+    @Test
+    @DisplayName("測試 3：前 N 名同分並列與年份彙總")
+    void testTiesAndYears() {
+        RegionalAggregates aggregates = new RegionalAggregates();
+        aggregates.apply(sampleRows());
+
+        List<Map<String, Object>> top = aggregates.countries(2, null);
+        assertEquals(3, top.size(), "第二名 4.1 同分兩國都要保留");
+        assertEquals("Finland", top.get(1).get("country"));
+
+        assertEquals(Map.of("ASIA", 3.0), aggregates.averageByRegion("asia", 2018));
+        assertTrue(aggregates.averageByRegion(null, 1999).isEmpty());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.service.DatasetVersion;
+import com.example.tradex.service.ResultCache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ResultCacheTest {
+
+    @Test
+    @DisplayName("測試 1：同版本命中，版本前進後重新計算")
+    void testVersionInvalidation() {
+        ResultCache cache = new ResultCache(10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(List.of(1), cache.get("plan:TOP_N", 1, () -> List.of(calls.incrementAndGet())));
+        assertEquals(List.of(1), cache.get("plan:TOP_N", 1, () -> List.of(calls.incrementAndGet())));
+        assertEquals(1, calls.get());
+
+        assertEquals(List.of(2), cache.get("plan:TOP_N", 2, () -> List.of(calls.incrementAndGet())));
+        // 比目前還舊的版本算出來的結果不寫入
+        cache.get("plan:TOP_N", 1, () -> List.of(calls.incrementAndGet()));
+        assertEquals(List.of(2), cache.get("plan:TOP_N", 2, () -> List.of(calls.incrementAndGet())));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    @DisplayName("測試 2：超過上限時淘汰最久未使用的結果")
+    void testLruEviction() {
+        ResultCache cache = new ResultCache(2);
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get("a", 1, () -> calls.incrementAndGet());
+        cache.get("b", 1, () -> calls.incrementAndGet());
+        cache.get("a", 1, () -> calls.incrementAndGet());   // a 變成最近使用
+        cache.get("c", 1, () -> calls.incrementAndGet());   // 淘汰 b
+
+        assertEquals(3, calls.get());
+        cache.get("a", 1, () -> calls.incrementAndGet());
+        assertEquals(3, calls.get(), "a 應該還在快取中");
+        cache.get("b", 1, () -> calls.incrementAndGet());
+        assertEquals(4, calls.get(), "b 已被淘汰");
+    }
+
+    @Test
+    @DisplayName("測試 3：ETag 只取決於 key 與資料版本")
+    void testEtag() {
+        assertEquals(ResultCache.etag("plan:TOP_N|5", 3), ResultCache.etag("plan:TOP_N|5", 3));
+        assertNotEquals(ResultCache.etag("plan:TOP_N|5", 3), ResultCache.etag("plan:TOP_N|5", 4));
+        assertNotEquals(ResultCache.etag("plan:TOP_N|5", 3), ResultCache.etag("plan:TOP_N|10", 3));
+    }
+
+    @Test
+    @DisplayName("測試 4：沒有來源確認資料時版本號過期前進，舊結果不再命中")
+    void testVersionExpiresWithoutConfirmation() {
+        DatasetVersion version = new DatasetVersion(60_000);
+        ResultCache cache = new ResultCache(10);
+        AtomicInteger calls = new AtomicInteger();
+        long now = System.nanoTime();
+
+        cache.get("path:/rest/v1/countries_lpi?select=country", version.current(), calls::incrementAndGet);
+        version.expire(now + TimeUnit.SECONDS.toNanos(30));
+        assertEquals(1, version.current(), "還沒過期");
+
+        version.confirm();
+        version.expire(System.nanoTime() + TimeUnit.SECONDS.toNanos(59));
+        assertEquals(1, version.current(), "確認過就重新計時");
+
+        version.expire(System.nanoTime() + TimeUnit.MINUTES.toNanos(2));
+        assertEquals(2, version.current());
+        cache.get("path:/rest/v1/countries_lpi?select=country", version.current(), calls::incrementAndGet);
+        assertEquals(2, calls.get());
+
+        DatasetVersion never = new DatasetVersion(0);
+        never.expire(System.nanoTime() + TimeUnit.DAYS.toNanos(1));
+        assertEquals(1, never.current(), "max-age = 0 不過期");
+    }
+}
@@ -11,6 +11,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 class ScoreParserServiceTest {
 
@@ -32,6 +34,29 @@ class ScoreParserServiceTest {
         assertEquals("4.15", scoreParserService.parse("FOUR POINT FIFTEEN"));
     }
 
+    @Test
+    @DisplayName("測試 1-2：數值解析 API (parseScore)")
+    void testParseScore() {
+        // 純數字快速路徑
+        assertEquals(3.6, scoreParserService.parseScore("3.6"));
+        assertEquals(4.0, scoreParserService.parseScore(" 4 "));
+        assertEquals(2.75, scoreParserService.parseScore(2.75));
+
+        // 文字分數，結果與 Double.parseDouble 完全一致
+        assertEquals(Double.parseDouble("3.66"), scoreParserService.parseScore("three point six six"));
+        assertEquals(Double.parseDouble("4.15"), scoreParserService.parseScore("FOUR POINT FIFTEEN"));
+        assertEquals(Double.parseDouble("3.25"), scoreParserService.parseScore("three point twenty-five"));
+        // 重複的髒字串走快取，結果不變
+        assertEquals(Double.parseDouble("3.25"), scoreParserService.parseScore("three point twenty-five"));
+
+        // 無法解析 -> NaN
+        assertTrue(Double.isNaN(scoreParserService.parseScore("N/A")));
+        assertTrue(Double.isNaN(scoreParserService.parseScore("1.2.3")));
+        assertTrue(Double.isNaN(scoreParserService.parseScore("-1")));
+        assertTrue(Double.isNaN(scoreParserService.parseScore("three point")));
+        assertTrue(Double.isNaN(scoreParserService.parseScore(null)));
+    }
+
     @Test
     @DisplayName("測試 2：資料清洗與去重邏輯 (Data Cleaning & Deduplication)")
     void testProcessData() {
@@ -72,6 +97,27 @@ class ScoreParserServiceTest {
         assertTrue(result.get(1).get("country").toString().contains("Vietnam"), "第二名應該是 Vietnam 系列");
     }
 
+    @Test
+    @DisplayName("測試 3：區域平均與 Collectors.averagingDouble 結果完全相同")
+    void testAverageByRegionMatchesAveragingDouble() {
+        Random random = new Random(7);
+        String[] regions = {"Asia", "asia ", "Europe", "Latin America", null};
+        String[] scores = {"4.1", "4.10", "three point six", "3.25", "N/A", "2.5", "4.3", "0.1", "1e-9", null};
+
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            data.add(createRow("Chile", regions[random.nextInt(regions.length)], scores[random.nextInt(scores.length)]));
+        }
+
+        Map<String, Double> expected = data.stream()
+                .filter(row -> row.get("region") != null && row.get("lpi_score") != null)
+                .filter(row -> !Double.isNaN(scoreParserService.parseScore(row.get("lpi_score"))))
+                .collect(Collectors.groupingBy(row -> row.get("region").toString().toUpperCase().trim(),
+                        Collectors.averagingDouble(row -> scoreParserService.parseScore(row.get("lpi_score")))));
+
+        assertEquals(expected, scoreParserService.averageByRegion(data));
+    }
+
     private Map<String, Object> createRow(String country, String region, String score) {
         Map<String, Object> row = new HashMap<>();
         row.put("country", country);
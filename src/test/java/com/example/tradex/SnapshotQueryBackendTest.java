@@ -0,0 +1,147 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.tradex.model.LpiRow;
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.query.PostgrestQuery;
+import com.example.tradex.query.QueryPlan;
+import com.example.tradex.service.AskMetrics;
+import com.example.tradex.service.LpiAggregateService;
+import com.example.tradex.service.LpiRowDecoder;
+import com.example.tradex.service.LpiSnapshotService;
+import com.example.tradex.service.PartitionedFetcher;
+import com.example.tradex.service.ScoreParserService;
+import com.example.tradex.service.SnapshotQueryBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * 快照尚未載入時的臨時讀取（以假的 PostgREST 回應驗證欄位投影），以及 LLM 路徑何時能在快照上執行
+ */
+@ExtendWith(MockitoExtension.class)
+class SnapshotQueryBackendTest {
+
+    private static final List<Map<String, Object>> TABLE = List.of(
+            row("Singapore", "Asia", "4.3", 2023),
+            row("Japan", "Asia", "3.9", 2018),
+            row("Viet Nam", "Asia", "3.3", 2023),
+            row("Germany", "Europe", "4.1", 2023));
+
+    private final LpiRowDecoder decoder = new LpiRowDecoder(new ObjectMapper(), new ScoreParserService());
+
+    @Mock
+    private LpiSnapshotService lpiSnapshotService;
+
+    @Mock
+    private LpiAggregateService lpiAggregateService;
+
+    @Mock
+    private PartitionedFetcher partitionedFetcher;
+
+    @Spy
+    private AskMetrics askMetrics = new AskMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private ScoreParserService scoreParserService = new ScoreParserService();
+
+    @InjectMocks
+    private SnapshotQueryBackend backend;
+
+    private static Map<String, Object> row(String country, String region, String score, int year) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("country", country);
+        row.put("region", region);
+        row.put("lpi_score", score);
+        row.put("year", year);
+        return row;
+    }
+
+    @Test
+    @DisplayName("測試 1：快照未載入時，帶年份的計畫仍選回 year，結果與快照一致")
+    @SuppressWarnings("unchecked")
+    void testFallbackWithYear() throws Exception {
+        when(lpiSnapshotService.current()).thenReturn(Optional.empty());
+        List<String> paths = new ArrayList<>();
+        when(partitionedFetcher.rows(anyString(), any(), any())).thenAnswer(call -> {
+            String path = call.getArgument(0);
+            paths.add(path);
+            return decoder.decode(new ByteArrayInputStream(respond(path)), call.getArgument(1),
+                    (Predicate<LpiRow>) call.getArgument(2));
+        });
+
+        QueryPlan plan = new QueryPlan(QueryPlan.Intent.SCORE_ABOVE, 0, 3.0, null, "Asia", 2023);
+        List<Map<String, Object>> result = backend.countries(plan);
+
+        assertTrue(paths.get(0).contains("select=country,region,lpi_score,year"), paths.get(0));
+        assertTrue(paths.get(0).contains("&year=eq.2023"));
+        assertEquals(List.of("Singapore", "Viet Nam"), result.stream().map(r -> r.get("country")).toList());
+
+        LpiSnapshot.Builder loaded = new LpiSnapshot.Builder();
+        TABLE.forEach(r -> loaded.add((String) r.get("country"), (String) r.get("region"),
+                Double.parseDouble((String) r.get("lpi_score")), (Integer) r.get("year")));
+        assertEquals(loaded.build().countries(plan), result, "與快照已載入時的答案相同");
+    }
+
+    @Test
+    @DisplayName("測試 2：快照沒有無效分數的列，只有分數條件本來就排除 null 的查詢在本地執行")
+    void testEvaluateOnlyWhenNullScoresExcluded() {
+        LpiSnapshot snapshot = new LpiSnapshot.Builder()
+                .add("Singapore", "Asia", 4.3, 2023)
+                .add("Germany", "Europe", 4.1, 2023)
+                .build();
+        lenient().when(lpiSnapshotService.current()).thenReturn(Optional.of(snapshot));
+        String base = "/rest/v1/countries_lpi?select=country,region";
+
+        // 分數無法解析的亞洲國家不在快照裡，這兩個查詢在 Supabase 上會回傳它們
+        assertTrue(backend.evaluate(PostgrestQuery.parse(base + "&region=ilike.*Asia*")).isEmpty());
+        assertTrue(backend.evaluate(PostgrestQuery.parse(base + "&lpi_score=is.null")).isEmpty());
+        assertTrue(backend.evaluate(PostgrestQuery.parse(base + "&order=lpi_score.desc")).isEmpty());
+
+        assertEquals(List.of(Map.of("country", "Singapore", "region", "Asia")),
+                backend.evaluate(PostgrestQuery.parse(base + "&region=ilike.*Asia*&lpi_score=gt.3")).orElseThrow());
+        assertEquals(2, backend.evaluate(PostgrestQuery.parse(base + "&lpi_score=not.is.null")).orElseThrow().size());
+        assertTrue(backend.evaluate(PostgrestQuery.parse(base + "&lpi_score=not.gt.5")).isPresent());
+    }
+
+    /**
+     * 模擬 PostgREST：套用 year=eq.N，只輸出 select 的欄位
+     */
+    private static byte[] respond(String path) throws Exception {
+        String query = path.substring(path.indexOf('?') + 1);
+        List<String> select = List.of();
+        Integer year = null;
+        for (String part : query.split("&")) {
+            if (part.startsWith("select=")) select = List.of(part.substring(7).split(","));
+            if (part.startsWith("year=eq.")) year = Integer.valueOf(part.substring(8));
+        }
+        List<Map<String, Object>> body = new ArrayList<>();
+        for (Map<String, Object> row : TABLE) {
+            if (year != null && !year.equals(row.get("year"))) continue;
+            Map<String, Object> projected = new LinkedHashMap<>();
+            for (String column : select) projected.put(column, row.get(column));
+            body.add(projected);
+        }
+        return new ObjectMapper().writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+    }
+}
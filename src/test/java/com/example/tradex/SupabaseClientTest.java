@@ -0,0 +1,163 @@
+package com.example.tradex;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.tradex.config.HttpClientConfig;
+import com.example.tradex.model.LpiSnapshot;
+import com.example.tradex.service.AskMetrics;
+import com.example.tradex.service.LpiRowDecoder;
+import com.example.tradex.service.OutboundGateway;
+import com.example.tradex.service.ScoreParserService;
+import com.example.tradex.service.SupabaseClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * 以本機 HttpServer 扮演 Supabase，走真正的 HttpClient 驗證條件式讀取：
+ * handler（Jackson）關閉串流後仍能讀完剩餘內容算 CRC，第二次帶驗證值時收到 304
+ */
+class SupabaseClientTest {
+
+    private static final String PATH = "/rest/v1/countries_lpi?select=country,region,lpi_score,year";
+    // 陣列後面還有空白，handler 讀完陣列就關閉串流時，剩下的內容必須另外讀完
+    private static final String BODY = """
+            [{"country":"Singapore","region":"Asia","lpi_score":"4.3","year":2023},
+             {"country":"Germany","region":"Europe","lpi_score":4.1,"year":2023}]
+            \s\s\s
+            """;
+
+    private final LpiRowDecoder decoder = new LpiRowDecoder(new ObjectMapper(), new ScoreParserService());
+    private final List<String> ifNoneMatch = new ArrayList<>();
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private SupabaseClient client;
+    private volatile String etag;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/rest/v1/countries_lpi", exchange -> {
+            try (exchange) {
+                String validator = exchange.getRequestHeaders().getFirst("If-None-Match");
+                ifNoneMatch.add(validator);
+                if (etag != null && etag.equals(validator)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+                if (etag != null) exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+
+        HttpClientConfig config = new HttpClientConfig();
+        httpClient = config.supabaseHttpClient(2000, 5000, 4);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        client = new SupabaseClient();
+        ReflectionTestUtils.setField(client, "supabaseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(client, "supabaseKey", "test");
+        ReflectionTestUtils.setField(client, "restTemplate", config.supabaseRestTemplate(httpClient));
+        ReflectionTestUtils.setField(client, "askMetrics", new AskMetrics(registry));
+        ReflectionTestUtils.setField(client, "gateway",
+                new OutboundGateway(registry, 4, 4, 10, 1000, 4, 4, 10, 1000, 2.0));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop(0);
+        httpClient.close();
+    }
+
+    private Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> fetch(LpiSnapshot.Builder builder) {
+        return client.streamIfModified(PATH, body -> decoder.decode(body, builder, row -> true));
+    }
+
+    @Test
+    @DisplayName("測試 1：上游有 ETag 時以 ETag 為驗證值，第二次帶 If-None-Match 收到 304")
+    void testEtagThenNotModified() {
+        etag = "\"v1\"";
+
+        LpiSnapshot.Builder builder = new LpiSnapshot.Builder();
+        Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> first = fetch(builder);
+
+        assertTrue(first.isPresent());
+        assertEquals("\"v1\"", first.get().validator());
+        assertEquals(2, first.get().value().kept());
+        assertEquals(2, builder.size());
+
+        Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> second = fetch(new LpiSnapshot.Builder());
+
+        assertTrue(second.isEmpty(), "內容未變更時回傳 empty");
+        assertEquals(List.of("\"v1\""), ifNoneMatch.subList(1, 2));
+    }
+
+    @Test
+    @DisplayName("測試 2：上游沒有 ETag 時以完整回應內容的 CRC32C 為驗證值")
+    void testCrcValidator() {
+        CRC32C crc = new CRC32C();
+        crc.update(BODY.getBytes(StandardCharsets.UTF_8));
+
+        Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> first = fetch(new LpiSnapshot.Builder());
+        Optional<SupabaseClient.Conditional<LpiRowDecoder.Result>> second = fetch(new LpiSnapshot.Builder());
+
+        assertEquals(Long.toHexString(crc.getValue()), first.get().validator(), "包含陣列後面的空白");
+        assertEquals(first.get().validator(), second.get().validator());
+        assertNull(ifNoneMatch.get(1), "沒有 ETag 就不送條件標頭");
+    }
+
+    @Test
+    @DisplayName("測試 3：條件式探測帶上次的 ETag，未變更時回傳 empty")
+    void testConditionalCount() {
+        etag = "\"v1\"";
+        fetch(new LpiSnapshot.Builder());
+
+        assertTrue(client.countIfModified(PATH).isEmpty());
+        assertEquals("\"v1\"", ifNoneMatch.get(1));
+    }
+
+    @Test
+    @DisplayName("測試 4：分段回應的 Content-Range 比要求的範圍短（max-rows 截斷）時拋出例外")
+    void testTruncatedRange() {
+        List<String> ranges = new ArrayList<>();
+        server.createContext("/rest/v1/truncated", exchange -> {
+            try (exchange) {
+                ranges.add(exchange.getRequestHeaders().getFirst("Range"));
+                byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Range", "0-1/2500");
+                exchange.sendResponseHeaders(206, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> client.streamRange(
+                "/rest/v1/truncated?order=id.asc", 0, 999, body -> decoder.decode(body, new LpiSnapshot.Builder(), row -> true)));
+        assertTrue(e.getMessage().contains("0-1/2500"), e.getMessage());
+        assertEquals(List.of("0-999"), ranges);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.query.TopNSelector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+class TopNSelectorTest {
+
+    private record Item(String key, double score) {}
+
+    @Test
+    @DisplayName("測試 1：第 N 名同分時一併保留")
+    void testTiesAtCutoff() {
+        TopNSelector<Item> selector = new TopNSelector<>(2, Item::score, Comparator.comparing(Item::key));
+        selector.offer(new Item("C", 4.04));
+        selector.offer(new Item("A", 4.5));
+        selector.offer(new Item("D", 3.9));
+        selector.offer(new Item("B", 4.04));
+
+        List<Item> result = selector.result();
+        assertEquals(List.of(new Item("A", 4.5), new Item("B", 4.04), new Item("C", 4.04)), result);
+    }
+
+    @Test
+    @DisplayName("測試 2：與「全部排序再取門檻」的結果一致")
+    void testMatchesFullSort() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int limit = 1 + random.nextInt(10);
+            List<Item> items = new ArrayList<>();
+            TopNSelector<Item> selector = new TopNSelector<>(limit, Item::score, Comparator.comparing(Item::key));
+            for (int i = 0; i < 50; i++) {
+                Item item = new Item("K" + i, random.nextInt(20) / 4.0); // 刻意製造大量同分
+                items.add(item);
+                selector.offer(item);
+            }
+
+            items.sort(Comparator.comparingDouble(Item::score).reversed().thenComparing(Item::key));
+            double threshold = items.get(limit - 1).score();
+            List<Item> expected = items.stream().filter(it -> it.score() >= threshold).toList();
+
+            assertEquals(expected, selector.result());
+        }
+    }
+
+    @Test
+    @DisplayName("測試 3：limit 很大時不預先配置 limit 大小的 heap")
+    void testHugeLimit() {
+        TopNSelector<Item> selector = new TopNSelector<>(Integer.MAX_VALUE, Item::score, Comparator.comparing(Item::key));
+        selector.offer(new Item("B", 3.1));
+        selector.offer(new Item("A", 4.2));
+
+        assertEquals(List.of(new Item("A", 4.2), new Item("B", 3.1)), selector.result());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.tradex;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.tradex.service.TranslationCache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class TranslationCacheTest {
+
+    @Test
+    @DisplayName("測試 1：正規化後相同的問題只呼叫一次 LLM")
+    void testNormalizedHit() {
+        TranslationCache cache = new TranslationCache(10, Duration.ofMinutes(1));
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get("Top 5 countries", q -> "/rest/v1/countries_lpi?n=" + calls.incrementAndGet());
+        String second = cache.get("  top   5 COUNTRIES ", q -> "/rest/v1/countries_lpi?n=" + calls.incrementAndGet());
+
+        assertEquals(1, calls.get());
+        assertEquals("/rest/v1/countries_lpi?n=1", second);
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    @DisplayName("測試 2：LRU 淘汰與 TTL 過期")
+    void testEvictionAndTtl() {
+        AtomicLong now = new AtomicLong();
+        TranslationCache cache = new TranslationCache(2, Duration.ofSeconds(10), now::get);
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get("a", q -> q + calls.incrementAndGet());
+        cache.get("b", q -> q + calls.incrementAndGet());
+        cache.get("a", q -> q + calls.incrementAndGet()); // 命中，a 變成最近使用
+        cache.get("c", q -> q + calls.incrementAndGet()); // 淘汰 b
+        assertEquals(3, calls.get());
+
+        assertEquals("a1", cache.get("a", q -> q + calls.incrementAndGet()));
+        assertEquals("b4", cache.get("b", q -> q + calls.incrementAndGet()));
+
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertEquals("b5", cache.get("b", q -> q + calls.incrementAndGet()), "過期後應重新呼叫");
+    }
+
+    @Test
+    @DisplayName("測試 3：同時大量相同問題只觸發一次 LLM（single-flight）")
+    void testSingleFlight() throws Exception {
+        TranslationCache cache = new TranslationCache(10, Duration.ofMinutes(1));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(8);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(pool.submit(() -> {
+                ready.countDown();
+                ready.await();
+                return cache.get("前五名", q -> {
+                    calls.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "/rest/v1/countries_lpi";
+                });
+            }));
+        }
+        loading.await();
+        release.countDown();
+
+        for (Future<String> f : futures) {
+            assertEquals("/rest/v1/countries_lpi", f.get());
+        }
+        pool.shutdown();
+        // 晚到的請求不論是等待同一個結果，還是在寫入後才登記，都不會再呼叫 LLM
+        assertEquals(1, calls.get());
+        assertEquals(1L, cache.stats().get("misses"));
+        assertEquals(7L, cache.stats().get("hits") + cache.stats().get("coalesced"));
+    }
+}